@@ -0,0 +1,118 @@
+package com.frasker.pullrefreshlayout.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link PullEngine}. Run with {@code ./gradlew :pullrefresh-core:jmh},
+ * the gc profiler reports the allocation rate per gesture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PullEngineBenchmark {
+
+    private static final int TOTAL_DRAG_DISTANCE = 210;
+    private static final int TRIGGER_REFRESH_DISTANCE = 126;
+    private static final int HEADER_HEIGHT = 150;
+
+    /**
+     * Number of samples the input system batched into one move event.
+     */
+    @Param({"1", "4", "16"})
+    public int samplesPerEvent;
+
+    private PullEngine mEngine;
+    private float[] mSamples;
+    private float[] mGesture;
+
+    @Setup
+    public void setUp() {
+        mEngine = new DefaultPullEngine();
+        mEngine.setTotalDragDistance(TOTAL_DRAG_DISTANCE);
+        mEngine.setTriggerRefreshDistance(TRIGGER_REFRESH_DISTANCE);
+        mEngine.setDragRate(.5f);
+        mSamples = new float[samplesPerEvent];
+        for (int i = 0; i < samplesPerEvent; i++) {
+            mSamples[i] = 24f / samplesPerEvent;
+        }
+        // 下拉超过触发距离，回拉到触发距离以下，再拉过去
+        mGesture = new float[120];
+        for (int i = 0; i < mGesture.length; i++) {
+            mGesture[i] = i < 40 || i >= 80 ? 9f : -9f;
+        }
+    }
+
+    /**
+     * One move event as PullRefreshLayout handles it: every batched sample goes
+     * through {@link PullEngine#drag(float, float)}, then the release state of
+     * the new offset is checked.
+     */
+    @Benchmark
+    public boolean dragEvent() {
+        float offset = 0;
+        for (float dy : mSamples) {
+            offset = mEngine.drag(offset, dy);
+        }
+        return mEngine.isReleaseToRefresh(offset);
+    }
+
+    /**
+     * {@link PullEngine#isReleaseToRefresh(float)} for offsets swept across the
+     * trigger distance and back. Only the threshold check, the state changes and
+     * header callbacks it leads to are made by PullRefreshLayout and are covered
+     * by its Robolectric performance test.
+     */
+    @Benchmark
+    public int releaseThresholdSweep() {
+        int transitions = 0;
+        boolean release = false;
+        for (int offset = 0; offset <= TOTAL_DRAG_DISTANCE; offset++) {
+            final boolean newRelease = mEngine.isReleaseToRefresh(offset);
+            if (newRelease != release) {
+                release = newRelease;
+                transitions++;
+            }
+        }
+        for (int offset = TOTAL_DRAG_DISTANCE; offset >= 0; offset--) {
+            final boolean newRelease = mEngine.isReleaseToRefresh(offset);
+            if (newRelease != release) {
+                release = newRelease;
+                transitions++;
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * A whole gesture: the drag, the release decision and the settle duration.
+     * Should not allocate, check gc.alloc.rate.norm of this benchmark.
+     */
+    @Benchmark
+    public void gesture(Blackhole blackhole) {
+        float offset = 0;
+        boolean release = false;
+        for (float dy : mGesture) {
+            for (int i = 0; i < samplesPerEvent; i++) {
+                offset = mEngine.drag(offset, dy / samplesPerEvent);
+            }
+            final boolean newRelease = mEngine.isReleaseToRefresh(offset);
+            if (newRelease != release) {
+                release = newRelease;
+                blackhole.consume(mEngine.getProgress(offset));
+            }
+        }
+        final int current = Math.round(offset);
+        final int target = mEngine.shouldRefreshOnRelease(offset) ? HEADER_HEIGHT : 0;
+        blackhole.consume(mEngine.computeSettleDuration(current, target, -1200f, HEADER_HEIGHT));
+    }
+}
@@ -0,0 +1,84 @@
+package com.frasker.pullrefreshlayout.core;
+
+/**
+ * Default {@link PullEngine}: the resistance grows linearly with the offset
+ * while pulling down, pushing up is damped by the drag rate.
+ */
+public class DefaultPullEngine implements PullEngine {
+
+    private int mTotalDragDistance = -1;
+    private int mTriggerRefreshDistance = -1; // 触发显示释放刷新的距离
+    private float mDragRate = .5f;
+
+    @Override
+    public void setTotalDragDistance(int totalDragDistance) {
+        mTotalDragDistance = totalDragDistance;
+    }
+
+    @Override
+    public int getTotalDragDistance() {
+        return mTotalDragDistance;
+    }
+
+    @Override
+    public void setTriggerRefreshDistance(int triggerRefreshDistance) {
+        mTriggerRefreshDistance = triggerRefreshDistance;
+    }
+
+    @Override
+    public int getTriggerRefreshDistance() {
+        return mTriggerRefreshDistance;
+    }
+
+    @Override
+    public void setDragRate(float dragRate) {
+        mDragRate = dragRate;
+    }
+
+    @Override
+    public float getDragRate() {
+        return mDragRate;
+    }
+
+    @Override
+    public float applyDragResistance(float dy, float currentOffset) {
+        if (dy < 0) {
+            return dy * mDragRate;
+        }
+        final float dragPercent = Math.min(1f, Math.abs(currentOffset / mTotalDragDistance));
+        return dy * (1 - dragPercent);
+    }
+
+    @Override
+    public float drag(float currentOffset, float dy) {
+        final float offset = currentOffset + applyDragResistance(dy, currentOffset);
+        return Math.max(0, Math.min(offset, mTotalDragDistance));
+    }
+
+    @Override
+    public float getProgress(float offset) {
+        return offset / mTotalDragDistance;
+    }
+
+    @Override
+    public boolean isReleaseToRefresh(float offset) {
+        return offset >= mTriggerRefreshDistance;
+    }
+
+    @Override
+    public boolean shouldRefreshOnRelease(float offset) {
+        return offset > mTriggerRefreshDistance;
+    }
+
+    @Override
+    public int computeSettleDuration(int from, int to, float velocity, int headerHeight) {
+        final int distance = Math.abs(to - from);
+        // 只有速度朝向目标位置时才用速度计算时长
+        velocity = (to - from) * velocity > 0 ? Math.abs(velocity) : 0;
+        if (velocity > 0) {
+            return 3 * Math.round(1000 * (distance / velocity));
+        }
+        final float distanceRatio = (float) distance / (headerHeight > 0 ? headerHeight : mTotalDragDistance);
+        return (int) ((distanceRatio + 1) * 150);
+    }
+}
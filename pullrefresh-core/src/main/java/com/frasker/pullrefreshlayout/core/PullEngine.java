@@ -0,0 +1,60 @@
+package com.frasker.pullrefreshlayout.core;
+
+/**
+ * Gesture math and state decisions of PullRefreshLayout, free of any Android
+ * dependency so it can be unit tested and benchmarked on a plain JVM.
+ * Offsets are in pixels, positive when the header is pulled down.
+ */
+public interface PullEngine {
+
+    void setTotalDragDistance(int totalDragDistance);
+
+    int getTotalDragDistance();
+
+    void setTriggerRefreshDistance(int triggerRefreshDistance);
+
+    int getTriggerRefreshDistance();
+
+    void setDragRate(float dragRate);
+
+    float getDragRate();
+
+    /**
+     * Applies the drag resistance to a finger movement of {@code dy} pixels
+     * at the given offset, without rounding.
+     *
+     * @return The resulting change of the offset.
+     */
+    float applyDragResistance(float dy, float currentOffset);
+
+    /**
+     * Moves the offset by a finger movement of {@code dy} pixels.
+     *
+     * @return The new offset, kept between 0 and the total drag distance.
+     */
+    float drag(float currentOffset, float dy);
+
+    /**
+     * @return Offset relative to the total drag distance.
+     */
+    float getProgress(float offset);
+
+    /**
+     * @return Whether the header should show release to refresh at this offset.
+     */
+    boolean isReleaseToRefresh(float offset);
+
+    /**
+     * @return Whether releasing the finger at this offset starts a refresh.
+     */
+    boolean shouldRefreshOnRelease(float offset);
+
+    /**
+     * Duration of the animation that settles the offset after a release.
+     *
+     * @param velocity     Velocity of the offset in pixels per second, only used
+     *                     when it points towards {@code to}.
+     * @param headerHeight Height of the header, 0 when unknown.
+     */
+    int computeSettleDuration(int from, int to, float velocity, int headerHeight);
+}
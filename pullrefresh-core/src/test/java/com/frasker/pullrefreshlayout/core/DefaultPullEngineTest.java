@@ -0,0 +1,89 @@
+package com.frasker.pullrefreshlayout.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drag resistance, thresholds and settle durations of {@link DefaultPullEngine}.
+ */
+public class DefaultPullEngineTest {
+
+    private static final int TOTAL_DRAG_DISTANCE = 210;
+    private static final int TRIGGER_REFRESH_DISTANCE = 126;
+    private static final int HEADER_HEIGHT = 150;
+    private static final float DELTA = 0.001f;
+
+    private DefaultPullEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new DefaultPullEngine();
+        mEngine.setTotalDragDistance(TOTAL_DRAG_DISTANCE);
+        mEngine.setTriggerRefreshDistance(TRIGGER_REFRESH_DISTANCE);
+        mEngine.setDragRate(.5f);
+    }
+
+    @Test
+    public void pullResistanceGrowsWithOffset() {
+        assertEquals(10f, mEngine.applyDragResistance(10f, 0f), DELTA);
+        assertEquals(5f, mEngine.applyDragResistance(10f, TOTAL_DRAG_DISTANCE / 2f), DELTA);
+        assertEquals(0f, mEngine.applyDragResistance(10f, TOTAL_DRAG_DISTANCE), DELTA);
+        // 超出总距离后不会反向
+        assertEquals(0f, mEngine.applyDragResistance(10f, TOTAL_DRAG_DISTANCE + 50), DELTA);
+    }
+
+    @Test
+    public void pushIsDampedByDragRate() {
+        assertEquals(-5f, mEngine.applyDragResistance(-10f, 100f), DELTA);
+        mEngine.setDragRate(1f);
+        assertEquals(-10f, mEngine.applyDragResistance(-10f, 100f), DELTA);
+    }
+
+    @Test
+    public void dragKeepsOffsetInRange() {
+        assertEquals(TOTAL_DRAG_DISTANCE, mEngine.drag(0f, 1000f), DELTA);
+        assertEquals(0f, mEngine.drag(10f, -40f), DELTA);
+        assertEquals(40f, mEngine.drag(50f, -20f), DELTA);
+    }
+
+    @Test
+    public void dragIsIndependentOfSampling() {
+        // 一次移动拆成多个采样，结果只差阻尼随 offset 变化的部分
+        float offset = 0;
+        for (int i = 0; i < 4; i++) {
+            offset = mEngine.drag(offset, 6f);
+        }
+        final float single = mEngine.drag(0f, 24f);
+        assertTrue(offset < single);
+        assertEquals(single, offset, 1f);
+    }
+
+    @Test
+    public void releaseThresholds() {
+        assertFalse(mEngine.isReleaseToRefresh(TRIGGER_REFRESH_DISTANCE - .5f));
+        assertTrue(mEngine.isReleaseToRefresh(TRIGGER_REFRESH_DISTANCE));
+        // 停在触发距离上松手不刷新
+        assertFalse(mEngine.shouldRefreshOnRelease(TRIGGER_REFRESH_DISTANCE));
+        assertTrue(mEngine.shouldRefreshOnRelease(TRIGGER_REFRESH_DISTANCE + .5f));
+        assertEquals(.5f, mEngine.getProgress(TOTAL_DRAG_DISTANCE / 2f), DELTA);
+    }
+
+    @Test
+    public void settleDurationWithoutVelocity() {
+        assertEquals(300, mEngine.computeSettleDuration(0, HEADER_HEIGHT, 0f, HEADER_HEIGHT));
+        assertEquals(150, mEngine.computeSettleDuration(HEADER_HEIGHT, HEADER_HEIGHT, 0f, HEADER_HEIGHT));
+        // header 高度未知时按总拖动距离计算
+        assertEquals(225, mEngine.computeSettleDuration(TOTAL_DRAG_DISTANCE / 2, 0, 0f, 0));
+    }
+
+    @Test
+    public void settleDurationUsesVelocityTowardsTarget() {
+        assertEquals(375, mEngine.computeSettleDuration(HEADER_HEIGHT, 0, -1200f, HEADER_HEIGHT));
+        // 速度背离目标位置时忽略
+        assertEquals(300, mEngine.computeSettleDuration(HEADER_HEIGHT, 0, 1200f, HEADER_HEIGHT));
+    }
+}
@@ -0,0 +1,152 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Starts the periodic and on-resume refreshes of {@link PullRefreshLayout}.
+ * <p>
+ * The scheduler only runs while the layout is attached, shown in a visible
+ * window and enabled, a refresh that comes due while it is paused is started
+ * as soon as it resumes. After a REFRESH_FAILURE the interval is doubled for
+ * every failure in a row, up to the maximum backoff, a successful refresh
+ * resets it. A refresh is never started while another one is running or
+ * while the data is still fresh.
+ * </p>
+ */
+final class AutoRefreshScheduler implements Runnable {
+
+    // 连续失败次数超过它后不再翻倍，避免溢出
+    private static final int MAX_BACKOFF_SHIFT = 16;
+    // 只在恢复时刷新的情况下，第一次失败后等待的时间
+    private static final long RESUME_BACKOFF_BASE = 5000;
+
+    private final PullRefreshLayout mLayout;
+    private long mInterval; // 周期刷新的间隔，0 为不周期刷新
+    private long mMaxBackoff;
+    private boolean mRefreshOnResume;
+    private boolean mAttached;
+    private boolean mActive;
+    private int mFailures; // 连续失败次数
+    private long mLastCompleteTime = -1; // SystemClock.uptimeMillis()
+    private long mDueTime = -1; // 下一次周期刷新的时间，-1 为没有安排
+    private boolean mPosted;
+
+    AutoRefreshScheduler(PullRefreshLayout layout) {
+        mLayout = layout;
+        mAttached = ViewCompat.isAttachedToWindow(layout);
+    }
+
+    void setInterval(long interval) {
+        mInterval = interval;
+        mDueTime = interval > 0 ? SystemClock.uptimeMillis() + getDelay() : -1;
+        post();
+    }
+
+    void setMaxBackoff(long maxBackoff) {
+        mMaxBackoff = maxBackoff;
+    }
+
+    void setRefreshOnResume(boolean refreshOnResume) {
+        mRefreshOnResume = refreshOnResume;
+    }
+
+    boolean isIdle() {
+        return mInterval <= 0 && !mRefreshOnResume;
+    }
+
+    void setAttached(boolean attached) {
+        mAttached = attached;
+        updateActive();
+    }
+
+    /**
+     * Re-evaluates whether the layout can refresh now, called whenever its
+     * visibility or enabled state may have changed.
+     */
+    void updateActive() {
+        final View layout = mLayout;
+        // onDetachedFromWindow 时 view 仍然处于 attach 状态，单独记录
+        final boolean active = mAttached && layout.isShown()
+                && layout.getWindowVisibility() == View.VISIBLE && layout.isEnabled();
+        if (active == mActive) {
+            return;
+        }
+        mActive = active;
+        if (!active) {
+            remove();
+            return;
+        }
+        final long now = SystemClock.uptimeMillis();
+        if (mRefreshOnResume && !isBackingOff(now) && !mLayout.isRefreshFresh()) {
+            refresh(now);
+        } else {
+            post();
+        }
+    }
+
+    /**
+     * Called when any refresh finished, whether it was started by this scheduler or not.
+     */
+    void onRefreshComplete(boolean success) {
+        mFailures = success ? 0 : mFailures + 1;
+        mLastCompleteTime = SystemClock.uptimeMillis();
+        if (mInterval > 0) {
+            mDueTime = mLastCompleteTime + getDelay();
+            post();
+        }
+    }
+
+    void remove() {
+        if (mPosted) {
+            mPosted = false;
+            mLayout.removeCallbacks(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        mPosted = false;
+        if (mActive && mInterval > 0) {
+            refresh(SystemClock.uptimeMillis());
+        }
+    }
+
+    private void refresh(long now) {
+        // 数据还新鲜时跳过这一次，不显示刷新也不回调，等下一个周期再检查
+        if (!mLayout.isRefreshing() && !mLayout.isRefreshFresh()) {
+            mLayout.startAutoRefresh();
+        }
+        // 刷新结束时会重新安排，这里只是兜底，防止刷新被取消后不再周期刷新
+        if (mInterval > 0) {
+            mDueTime = now + getDelay();
+            post();
+        }
+    }
+
+    private void post() {
+        remove();
+        if (!mActive || mDueTime < 0) {
+            return;
+        }
+        mPosted = true;
+        mLayout.postDelayed(this, Math.max(mDueTime - SystemClock.uptimeMillis(), 0));
+    }
+
+    private boolean isBackingOff(long now) {
+        return mFailures > 0 && now < mLastCompleteTime + getDelay();
+    }
+
+    /**
+     * @return The interval with the exponential backoff of the failures in a row applied.
+     */
+    private long getDelay() {
+        final long interval = mInterval > 0 ? mInterval : RESUME_BACKOFF_BASE;
+        if (mFailures == 0) {
+            return interval;
+        }
+        final long delay = interval << Math.min(mFailures, MAX_BACKOFF_SHIFT);
+        return mMaxBackoff > 0 ? Math.max(Math.min(delay, mMaxBackoff), interval) : delay;
+    }
+}
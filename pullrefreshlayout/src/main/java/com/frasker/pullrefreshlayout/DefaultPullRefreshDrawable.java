@@ -0,0 +1,96 @@
+package com.frasker.pullrefreshlayout;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+/**
+ * Lightweight header used by {@link PullRefreshLayout} when no header is given:
+ * an arc that grows with the pull progress and spins while refreshing.
+ */
+public class DefaultPullRefreshDrawable implements IPullRefreshDrawable {
+
+    private static final int HEIGHT = 56; // dp
+    private static final int ARC_SIZE = 24; // dp
+    private static final int STROKE_WIDTH = 3; // dp
+    private static final int ROTATION_DURATION = 1000; // 旋转一圈的时间 ms
+    private static final float MAX_SWEEP = 300f;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mArcBounds = new RectF();
+    private final int mHeight;
+    private final float mArcSize;
+    private PullRefreshLayout.State mState = PullRefreshLayout.State.NONE;
+    private float mProgress;
+    private long mRefreshStartTime;
+
+    public DefaultPullRefreshDrawable(Context context) {
+        final float density = context.getResources().getDisplayMetrics().density;
+        mHeight = (int) (HEIGHT * density);
+        mArcSize = ARC_SIZE * density;
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+        mPaint.setStrokeWidth(STROKE_WIDTH * density);
+        mPaint.setColor(0xFF757575);
+    }
+
+    public void setColor(@ColorInt int color) {
+        mPaint.setColor(color);
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public boolean draw(@NonNull Canvas canvas, int width, int height) {
+        final float left = (width - mArcSize) / 2;
+        final float top = (height - mArcSize) / 2;
+        mArcBounds.set(left, top, left + mArcSize, top + mArcSize);
+        switch (mState) {
+            case REFRESHING: {
+                final long elapsed = SystemClock.uptimeMillis() - mRefreshStartTime;
+                final float rotation = 360f * (elapsed % ROTATION_DURATION) / ROTATION_DURATION;
+                canvas.drawArc(mArcBounds, rotation - 90, MAX_SWEEP * 0.8f, false, mPaint);
+                return true;
+            }
+            case REFRESH_SUCCESS:
+                canvas.drawArc(mArcBounds, 0, 360, false, mPaint);
+                return false;
+            case REFRESH_FAILURE:
+                // 失败时显示一段短弧
+                canvas.drawArc(mArcBounds, -90, MAX_SWEEP * 0.2f, false, mPaint);
+                return false;
+            default:
+                canvas.drawArc(mArcBounds, -90, MAX_SWEEP * Math.min(mProgress, 1f), false, mPaint);
+                return false;
+        }
+    }
+
+    @Override
+    public void onReady(PullRefreshLayout refreshLayout) {
+    }
+
+    @Override
+    public void onReset(PullRefreshLayout refreshLayout) {
+        mProgress = 0;
+    }
+
+    @Override
+    public void onOffsetTopChanged(PullRefreshLayout refreshLayout, int offset, float progress, PullRefreshLayout.State state) {
+        mProgress = progress;
+    }
+
+    @Override
+    public void onStateChanged(PullRefreshLayout refreshLayout, PullRefreshLayout.State newState) {
+        if (newState == PullRefreshLayout.State.REFRESHING && mState != newState) {
+            mRefreshStartTime = SystemClock.uptimeMillis();
+        }
+        mState = newState;
+    }
+}
@@ -0,0 +1,223 @@
+package com.frasker.pullrefreshlayout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A gesture trace written by {@link GestureTraceRecorder}, ready to be
+ * replayed with {@link GestureTraceReplayer}.
+ */
+public final class GestureTrace {
+
+    private final byte[] mData;
+    private final int mEventCount;
+    private final long mDurationMillis;
+    private final boolean mHasMotionEvents;
+
+    private GestureTrace(byte[] data) throws IOException {
+        mData = data;
+        final Reader reader = reader();
+        int count = 0;
+        long duration = 0;
+        boolean hasMotionEvents = false;
+        while (reader.hasNext()) {
+            reader.next();
+            duration += reader.mTimeDelta;
+            hasMotionEvents |= reader.mType == GestureTraceRecorder.TYPE_MOTION;
+            count++;
+        }
+        mEventCount = count;
+        mDurationMillis = duration;
+        mHasMotionEvents = hasMotionEvents;
+    }
+
+    /**
+     * Read a trace from the given stream, the stream is read to its end but not closed.
+     *
+     * @throws IOException If the stream could not be read or is not a valid trace.
+     */
+    public static GestureTrace read(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new GestureTrace(out.toByteArray());
+    }
+
+    /**
+     * @throws IOException If the data is not a valid trace.
+     */
+    public static GestureTrace fromByteArray(byte[] data) throws IOException {
+        return new GestureTrace(data.clone());
+    }
+
+    /**
+     * @return Number of recorded events.
+     */
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return Time between the first and the last recorded event.
+     */
+    public long getDurationMillis() {
+        return mDurationMillis;
+    }
+
+    boolean hasMotionEvents() {
+        return mHasMotionEvents;
+    }
+
+    Reader reader() throws IOException {
+        return new Reader(mData);
+    }
+
+    /**
+     * Decodes the records one by one, the fields of the current record are
+     * valid until {@link #next()} is called again.
+     */
+    static final class Reader {
+
+        private final byte[] mData;
+        private int mPosition;
+
+        int mType;
+        long mTimeDelta;
+        // TYPE_MOTION
+        int mAction;
+        long mDownTimeDelta;
+        int mPointerCount;
+        int[] mPointerIds = new int[2];
+        int mHistorySize;
+        long[] mHistoryTimeDeltas = new long[4];
+        // 每个采样 pointerCount 个 x/y，historical 在前，最后是本次事件
+        float[] mCoords = new float[20];
+        // 嵌套滑动的参数
+        int[] mArgs = new int[5];
+        float mVelocityX;
+        float mVelocityY;
+
+        Reader(byte[] data) throws IOException {
+            mData = data;
+            if (data.length < 5 || readInt() != GestureTraceRecorder.MAGIC) {
+                throw new IOException("Not a gesture trace");
+            }
+            final int version = readByte();
+            if (version != GestureTraceRecorder.VERSION) {
+                throw new IOException("Unsupported gesture trace version " + version);
+            }
+        }
+
+        boolean hasNext() {
+            return mPosition < mData.length;
+        }
+
+        void next() throws IOException {
+            mType = readByte();
+            mTimeDelta = readVarLong();
+            switch (mType) {
+                case GestureTraceRecorder.TYPE_MOTION:
+                    readMotion();
+                    break;
+                case GestureTraceRecorder.TYPE_START_NESTED_SCROLL:
+                case GestureTraceRecorder.TYPE_NESTED_SCROLL_ACCEPTED:
+                    mArgs[0] = readVarInt();
+                    mArgs[1] = readVarInt();
+                    break;
+                case GestureTraceRecorder.TYPE_NESTED_PRE_SCROLL:
+                    mArgs[0] = readSignedVarInt();
+                    mArgs[1] = readSignedVarInt();
+                    mArgs[2] = readVarInt();
+                    break;
+                case GestureTraceRecorder.TYPE_NESTED_SCROLL:
+                    for (int i = 0; i < 4; i++) {
+                        mArgs[i] = readSignedVarInt();
+                    }
+                    mArgs[4] = readVarInt();
+                    break;
+                case GestureTraceRecorder.TYPE_NESTED_PRE_FLING:
+                    mVelocityX = readFloat();
+                    mVelocityY = readFloat();
+                    break;
+                case GestureTraceRecorder.TYPE_STOP_NESTED_SCROLL:
+                    mArgs[0] = readVarInt();
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + mType + " at " + (mPosition - 1));
+            }
+        }
+
+        private void readMotion() throws IOException {
+            mAction = readVarInt();
+            mDownTimeDelta = readVarLong();
+            mPointerCount = readVarInt();
+            if (mPointerCount < 1) {
+                throw new IOException("Invalid pointer count " + mPointerCount);
+            }
+            if (mPointerIds.length < mPointerCount) {
+                mPointerIds = new int[mPointerCount];
+            }
+            for (int i = 0; i < mPointerCount; i++) {
+                mPointerIds[i] = readVarInt();
+            }
+            mHistorySize = readVarInt();
+            if (mHistoryTimeDeltas.length < mHistorySize) {
+                mHistoryTimeDeltas = new long[mHistorySize];
+            }
+            final int coordCount = (mHistorySize + 1) * mPointerCount * 2;
+            if (mCoords.length < coordCount) {
+                mCoords = new float[coordCount];
+            }
+            int index = 0;
+            for (int h = 0; h < mHistorySize; h++) {
+                mHistoryTimeDeltas[h] = readVarLong();
+                for (int i = 0; i < mPointerCount * 2; i++) {
+                    mCoords[index++] = readFloat();
+                }
+            }
+            for (int i = 0; i < mPointerCount * 2; i++) {
+                mCoords[index++] = readFloat();
+            }
+        }
+
+        private int readByte() throws IOException {
+            if (mPosition >= mData.length) {
+                throw new IOException("Truncated gesture trace");
+            }
+            return mData[mPosition++] & 0xff;
+        }
+
+        private int readInt() throws IOException {
+            return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+        }
+
+        private float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private int readSignedVarInt() throws IOException {
+            final int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint at " + mPosition);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records the touch events and nested scroll callbacks that reach a
+ * {@link PullRefreshLayout} into a compact binary trace, see
+ * {@link PullRefreshLayout#setGestureTraceRecorder(GestureTraceRecorder)}.
+ * The trace is kept in memory until {@link #writeTo(OutputStream)} is called,
+ * it can be read back with {@link GestureTrace#read(java.io.InputStream)} and
+ * replayed with {@link GestureTraceReplayer}.
+ * <p>
+ * Every record starts with its type and the time since the previous record
+ * in milliseconds, integers are stored as varints and coordinates as floats.
+ * Once {@code maxBytes} is reached further records are dropped.
+ * </p>
+ */
+public final class GestureTraceRecorder {
+
+    static final int MAGIC = 0x50525452; // "PRTR"
+    static final int VERSION = 1;
+
+    static final int TYPE_MOTION = 1;
+    static final int TYPE_START_NESTED_SCROLL = 2;
+    static final int TYPE_NESTED_SCROLL_ACCEPTED = 3;
+    static final int TYPE_NESTED_PRE_SCROLL = 4;
+    static final int TYPE_NESTED_SCROLL = 5;
+    static final int TYPE_NESTED_PRE_FLING = 6;
+    static final int TYPE_STOP_NESTED_SCROLL = 7;
+
+    private static final int DEFAULT_MAX_BYTES = 256 * 1024;
+    // 除 MotionEvent 外单条记录的最大长度：类型、时间和 5 个 varint
+    private static final int MAX_RECORD_BYTES = 64;
+
+    private final int mMaxBytes;
+    private byte[] mBuffer = new byte[1024];
+    private int mSize;
+    private int mEventCount;
+    private long mLastTime = -1;
+    private boolean mTruncated;
+
+    public GestureTraceRecorder() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes Maximum size of the trace, records beyond it are dropped.
+     */
+    public GestureTraceRecorder(int maxBytes) {
+        mMaxBytes = maxBytes;
+        clear();
+    }
+
+    /**
+     * Drop everything recorded so far.
+     */
+    public void clear() {
+        mSize = 0;
+        mEventCount = 0;
+        mLastTime = -1;
+        mTruncated = false;
+        writeInt(MAGIC);
+        writeByte(VERSION);
+    }
+
+    /**
+     * @return Number of recorded events.
+     */
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return Size of the trace in bytes.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return Whether events were dropped because the trace reached its maximum size.
+     */
+    public boolean isTruncated() {
+        return mTruncated;
+    }
+
+    /**
+     * Write the trace recorded so far.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(mBuffer, 0, mSize);
+    }
+
+    /**
+     * @return A copy of the trace recorded so far.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    void recordMotionEvent(MotionEvent ev) {
+        final int pointerCount = ev.getPointerCount();
+        final int historySize = ev.getHistorySize();
+        final int maxBytes = MAX_RECORD_BYTES + pointerCount * 13 + historySize * (10 + pointerCount * 8);
+        if (!beginRecord(TYPE_MOTION, ev.getEventTime(), maxBytes)) {
+            return;
+        }
+        writeVarInt(ev.getAction());
+        writeVarLong(ev.getEventTime() - ev.getDownTime());
+        writeVarInt(pointerCount);
+        for (int i = 0; i < pointerCount; i++) {
+            writeVarInt(ev.getPointerId(i));
+        }
+        // 先写 historical 数据，时间记为距离本次事件的毫秒数
+        writeVarInt(historySize);
+        for (int h = 0; h < historySize; h++) {
+            writeVarLong(ev.getEventTime() - ev.getHistoricalEventTime(h));
+            for (int i = 0; i < pointerCount; i++) {
+                writeFloat(ev.getHistoricalX(i, h));
+                writeFloat(ev.getHistoricalY(i, h));
+            }
+        }
+        for (int i = 0; i < pointerCount; i++) {
+            writeFloat(ev.getX(i));
+            writeFloat(ev.getY(i));
+        }
+    }
+
+    void recordStartNestedScroll(int axes, int type) {
+        if (beginRecord(TYPE_START_NESTED_SCROLL, SystemClock.uptimeMillis())) {
+            writeVarInt(axes);
+            writeVarInt(type);
+        }
+    }
+
+    void recordNestedScrollAccepted(int axes, int type) {
+        if (beginRecord(TYPE_NESTED_SCROLL_ACCEPTED, SystemClock.uptimeMillis())) {
+            writeVarInt(axes);
+            writeVarInt(type);
+        }
+    }
+
+    void recordNestedPreScroll(int dx, int dy, int type) {
+        if (beginRecord(TYPE_NESTED_PRE_SCROLL, SystemClock.uptimeMillis())) {
+            writeSignedVarInt(dx);
+            writeSignedVarInt(dy);
+            writeVarInt(type);
+        }
+    }
+
+    void recordNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
+        if (beginRecord(TYPE_NESTED_SCROLL, SystemClock.uptimeMillis())) {
+            writeSignedVarInt(dxConsumed);
+            writeSignedVarInt(dyConsumed);
+            writeSignedVarInt(dxUnconsumed);
+            writeSignedVarInt(dyUnconsumed);
+            writeVarInt(type);
+        }
+    }
+
+    void recordNestedPreFling(float velocityX, float velocityY) {
+        if (beginRecord(TYPE_NESTED_PRE_FLING, SystemClock.uptimeMillis())) {
+            writeFloat(velocityX);
+            writeFloat(velocityY);
+        }
+    }
+
+    void recordStopNestedScroll(int type) {
+        if (beginRecord(TYPE_STOP_NESTED_SCROLL, SystemClock.uptimeMillis())) {
+            writeVarInt(type);
+        }
+    }
+
+    private boolean beginRecord(int type, long time) {
+        return beginRecord(type, time, MAX_RECORD_BYTES);
+    }
+
+    private boolean beginRecord(int type, long time, int maxBytes) {
+        if (mTruncated) {
+            return false;
+        }
+        if (mSize + maxBytes > mMaxBytes) {
+            mTruncated = true;
+            return false;
+        }
+        ensureCapacity(mSize + maxBytes);
+        writeByte(type);
+        writeVarLong(mLastTime < 0 ? 0 : Math.max(time - mLastTime, 0));
+        mLastTime = time;
+        mEventCount++;
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(capacity, mBuffer.length * 2));
+        }
+    }
+
+    private void writeByte(int value) {
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    private void writeVarInt(int value) {
+        writeVarLong(value & 0xffffffffL);
+    }
+
+    private void writeSignedVarInt(int value) {
+        // zigzag，小的负数也只占一个字节
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+}
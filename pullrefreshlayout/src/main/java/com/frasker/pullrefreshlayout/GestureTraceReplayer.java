@@ -0,0 +1,258 @@
+package com.frasker.pullrefreshlayout;
+
+import android.support.v4.view.ViewCompat;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Feeds a {@link GestureTrace} back into a {@link PullRefreshLayout} and
+ * reports the offsets, the state sequence and the time spent handling every
+ * event. The trace is replayed against a {@link Clock} the caller controls,
+ * e.g. the Robolectric scheduler, so frame callbacks and animations run at the
+ * recorded pace and the result is deterministic.
+ * <p>
+ * When the trace holds touch events and the target of the layout has nested
+ * scrolling enabled, the target turns the replayed touches into nested scrolls
+ * again, so the recorded nested scrolls are skipped instead of being applied a
+ * second time.
+ */
+public final class GestureTraceReplayer {
+
+    private static final long DEFAULT_SETTLE_MILLIS = 1000;
+
+    /**
+     * Time source of a replay.
+     */
+    public interface Clock {
+        /**
+         * @return Current time in the {@code SystemClock.uptimeMillis()} base.
+         */
+        long uptimeMillis();
+
+        /**
+         * Move the time forward to {@code uptimeMillis}, running the frame
+         * callbacks and messages that become due on the way.
+         */
+        void advanceTo(long uptimeMillis);
+    }
+
+    private final Clock mClock;
+    private long mSettleMillis = DEFAULT_SETTLE_MILLIS;
+    private final List<PullRefreshLayout.State> mStates = new ArrayList<>();
+    private MotionEvent.PointerProperties[] mProperties = new MotionEvent.PointerProperties[0];
+    private MotionEvent.PointerCoords[] mCoords = new MotionEvent.PointerCoords[0];
+    private final int[] mConsumed = new int[2];
+    private boolean mReplayNestedScroll;
+
+    public GestureTraceReplayer(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Set how long the clock keeps running after the last event, so release
+     * animations can finish before the result is taken. Defaults to 1000ms.
+     */
+    public void setSettleMillis(long mSettleMillis) {
+        this.mSettleMillis = mSettleMillis;
+    }
+
+    /**
+     * Replay the trace into the layout, the layout should be attached and laid out.
+     *
+     * @throws IOException If the trace is corrupt.
+     */
+    public Result replay(PullRefreshLayout layout, GestureTrace trace) throws IOException {
+        final int count = trace.getEventCount();
+        final int[] offsets = new int[count];
+        final long[] eventNanos = new long[count];
+        mStates.clear();
+        final View target = layout.getTargetView();
+        // 内容开启嵌套滑动时，回放的触摸事件会重新产生嵌套滑动，录制的嵌套滑动只回放一层
+        mReplayNestedScroll = !trace.hasMotionEvents()
+                || target == null || !ViewCompat.isNestedScrollingEnabled(target);
+        layout.mTraceReplayer = this;
+        try {
+            final GestureTrace.Reader reader = trace.reader();
+            long time = mClock.uptimeMillis();
+            for (int i = 0; i < count; i++) {
+                reader.next();
+                time += reader.mTimeDelta;
+                mClock.advanceTo(time);
+                final long start = System.nanoTime();
+                dispatch(layout, reader, time);
+                eventNanos[i] = System.nanoTime() - start;
+                offsets[i] = layout.getCurrentOffset();
+            }
+            mClock.advanceTo(time + mSettleMillis);
+        } finally {
+            layout.mTraceReplayer = null;
+        }
+        return new Result(offsets, eventNanos, new ArrayList<>(mStates), layout.getCurrentOffset());
+    }
+
+    void onStateChanged(PullRefreshLayout.State state) {
+        mStates.add(state);
+    }
+
+    private void dispatch(PullRefreshLayout layout, GestureTrace.Reader reader, long time) {
+        if (reader.mType == GestureTraceRecorder.TYPE_MOTION) {
+            final MotionEvent event = obtainMotionEvent(reader, time);
+            layout.dispatchTouchEvent(event);
+            event.recycle();
+            return;
+        }
+        if (!mReplayNestedScroll) {
+            return;
+        }
+        final View target = layout.getTargetView();
+        if (target == null) {
+            throw new IllegalStateException("PullRefreshLayout has no target to replay nested scrolls from");
+        }
+        final int[] args = reader.mArgs;
+        switch (reader.mType) {
+            case GestureTraceRecorder.TYPE_START_NESTED_SCROLL:
+                layout.onStartNestedScroll(target, target, args[0], args[1]);
+                break;
+            case GestureTraceRecorder.TYPE_NESTED_SCROLL_ACCEPTED:
+                layout.onNestedScrollAccepted(target, target, args[0], args[1]);
+                break;
+            case GestureTraceRecorder.TYPE_NESTED_PRE_SCROLL:
+                mConsumed[0] = 0;
+                mConsumed[1] = 0;
+                layout.onNestedPreScroll(target, args[0], args[1], mConsumed, args[2]);
+                break;
+            case GestureTraceRecorder.TYPE_NESTED_SCROLL:
+                layout.onNestedScroll(target, args[0], args[1], args[2], args[3], args[4]);
+                break;
+            case GestureTraceRecorder.TYPE_NESTED_PRE_FLING:
+                layout.onNestedPreFling(target, reader.mVelocityX, reader.mVelocityY);
+                break;
+            case GestureTraceRecorder.TYPE_STOP_NESTED_SCROLL:
+                layout.onStopNestedScroll(target, args[0]);
+                break;
+        }
+    }
+
+    private MotionEvent obtainMotionEvent(GestureTrace.Reader reader, long eventTime) {
+        final int pointerCount = reader.mPointerCount;
+        ensurePointers(pointerCount);
+        for (int i = 0; i < pointerCount; i++) {
+            mProperties[i].clear();
+            mProperties[i].id = reader.mPointerIds[i];
+            mProperties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+        }
+        final long downTime = eventTime - reader.mDownTimeDelta;
+        final int historySize = reader.mHistorySize;
+        // 第一个采样用于创建事件，之后的 historical 和本次采样依次 addBatch
+        setCoords(reader, 0, pointerCount);
+        final long firstTime = historySize > 0 ? eventTime - reader.mHistoryTimeDeltas[0] : eventTime;
+        final MotionEvent event = MotionEvent.obtain(downTime, firstTime, reader.mAction, pointerCount,
+                mProperties, mCoords, 0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        for (int h = 1; h <= historySize; h++) {
+            setCoords(reader, h, pointerCount);
+            final long sampleTime = h < historySize ? eventTime - reader.mHistoryTimeDeltas[h] : eventTime;
+            event.addBatch(sampleTime, mCoords, 0);
+        }
+        return event;
+    }
+
+    private void setCoords(GestureTrace.Reader reader, int sample, int pointerCount) {
+        int index = sample * pointerCount * 2;
+        for (int i = 0; i < pointerCount; i++) {
+            mCoords[i].clear();
+            mCoords[i].x = reader.mCoords[index++];
+            mCoords[i].y = reader.mCoords[index++];
+            mCoords[i].pressure = 1f;
+            mCoords[i].size = 1f;
+        }
+    }
+
+    private void ensurePointers(int pointerCount) {
+        if (mProperties.length >= pointerCount) {
+            return;
+        }
+        final int oldLength = mProperties.length;
+        mProperties = Arrays.copyOf(mProperties, pointerCount);
+        mCoords = Arrays.copyOf(mCoords, pointerCount);
+        for (int i = oldLength; i < pointerCount; i++) {
+            mProperties[i] = new MotionEvent.PointerProperties();
+            mCoords[i] = new MotionEvent.PointerCoords();
+        }
+    }
+
+    /**
+     * Outcome of a replay.
+     */
+    public static final class Result {
+
+        private final int[] mOffsets;
+        private final long[] mEventNanos;
+        private final List<PullRefreshLayout.State> mStates;
+        private final int mFinalOffset;
+
+        Result(int[] offsets, long[] eventNanos, List<PullRefreshLayout.State> states, int finalOffset) {
+            mOffsets = offsets;
+            mEventNanos = eventNanos;
+            mStates = Collections.unmodifiableList(states);
+            mFinalOffset = finalOffset;
+        }
+
+        /**
+         * @return Number of replayed events.
+         */
+        public int getEventCount() {
+            return mOffsets.length;
+        }
+
+        /**
+         * @return Offset of the target right after each event was handled.
+         */
+        public int[] getOffsets() {
+            return mOffsets.clone();
+        }
+
+        /**
+         * @return Time spent handling each event, frame callbacks between events excluded.
+         */
+        public long[] getEventNanos() {
+            return mEventNanos.clone();
+        }
+
+        public long getTotalEventNanos() {
+            long total = 0;
+            for (long nanos : mEventNanos) {
+                total += nanos;
+            }
+            return total;
+        }
+
+        public long getMaxEventNanos() {
+            long max = 0;
+            for (long nanos : mEventNanos) {
+                max = Math.max(max, nanos);
+            }
+            return max;
+        }
+
+        /**
+         * @return Every state change of the layout during the replay and the settle time, in order.
+         */
+        public List<PullRefreshLayout.State> getStates() {
+            return mStates;
+        }
+
+        /**
+         * @return Offset of the target once the settle time has passed.
+         */
+        public int getFinalOffset() {
+            return mFinalOffset;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.frasker.pullrefreshlayout;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+
+/**
+ * Collects the header callbacks of {@link PullRefreshLayout} and delivers them
+ * once per Choreographer frame. Every state change is delivered in the order
+ * it happened, offset changes are coalesced into the last one of the frame.
+ */
+final class HeaderCallbackDispatcher {
+
+    private final PullRefreshLayout mLayout;
+    private final FrameCallback mFrameCallback;
+    private PullRefreshLayout.State[] mStates = new PullRefreshLayout.State[4];
+    private int mStateCount;
+    private boolean mOffsetPending;
+    private int mOffset;
+    private float mProgress;
+    private PullRefreshLayout.State mOffsetState;
+    private boolean mScheduled;
+
+    HeaderCallbackDispatcher(PullRefreshLayout layout) {
+        mLayout = layout;
+        mFrameCallback = Build.VERSION.SDK_INT >= 16 ? new ChoreographerCallback() : new PostOnAnimationCallback();
+    }
+
+    void postState(PullRefreshLayout.State state) {
+        if (mStateCount == mStates.length) {
+            final PullRefreshLayout.State[] states = new PullRefreshLayout.State[mStateCount * 2];
+            System.arraycopy(mStates, 0, states, 0, mStateCount);
+            mStates = states;
+        }
+        mStates[mStateCount++] = state;
+        schedule();
+    }
+
+    void postOffset(int offset, float progress, PullRefreshLayout.State state) {
+        mOffsetPending = true;
+        mOffset = offset;
+        mProgress = progress;
+        mOffsetState = state;
+        schedule();
+    }
+
+    /**
+     * Delivers everything that is pending right away, used before callbacks
+     * that are not coalesced so the header sees them in order.
+     */
+    void flush() {
+        if (mScheduled) {
+            mScheduled = false;
+            mFrameCallback.remove();
+        }
+        dispatch();
+    }
+
+    private void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            mFrameCallback.post();
+        }
+    }
+
+    private void dispatch() {
+        // 回调中产生的新状态追加在队尾，同一轮中按顺序分发
+        for (int i = 0; i < mStateCount; i++) {
+            final PullRefreshLayout.State state = mStates[i];
+            mStates[i] = null;
+            mLayout.dispatchStateChanged(state);
+        }
+        mStateCount = 0;
+        if (mOffsetPending) {
+            mOffsetPending = false;
+            final PullRefreshLayout.State state = mOffsetState;
+            mOffsetState = null;
+            mLayout.dispatchOffsetChanged(mOffset, mProgress, state);
+        }
+    }
+
+    private void onFrame() {
+        mScheduled = false;
+        dispatch();
+    }
+
+    private interface FrameCallback {
+        void post();
+
+        void remove();
+    }
+
+    @TargetApi(16)
+    private final class ChoreographerCallback implements FrameCallback, Choreographer.FrameCallback {
+
+        @Override
+        public void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame();
+        }
+    }
+
+    private final class PostOnAnimationCallback implements FrameCallback, Runnable {
+
+        @Override
+        public void post() {
+            ViewCompat.postOnAnimation(mLayout, this);
+        }
+
+        @Override
+        public void remove() {
+            mLayout.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            onFrame();
+        }
+    }
+}
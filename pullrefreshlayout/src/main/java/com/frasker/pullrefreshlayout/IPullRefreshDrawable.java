@@ -0,0 +1,29 @@
+package com.frasker.pullrefreshlayout;
+
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+
+/**
+ * A header that is not a View, {@link PullRefreshLayout} draws it itself in
+ * dispatchDraw inside the region exposed above the target. It receives the
+ * same callbacks as a View header but never takes part in measure or layout.
+ * Set one with {@link PullRefreshLayout#setHeaderDrawable(IPullRefreshDrawable)}.
+ */
+public interface IPullRefreshDrawable extends IPullRefreshHeader {
+
+    /**
+     * @return Height of the header in pixels, used as the refreshing height
+     * when p_refreshingHeight is not set.
+     */
+    int getIntrinsicHeight();
+
+    /**
+     * Draws the header. The canvas is translated to the top left corner of
+     * the header and clipped to the exposed region.
+     *
+     * @param width  Width of the header.
+     * @param height Height of the header, as returned by {@link #getIntrinsicHeight()}.
+     * @return Whether the header is animating and needs another frame.
+     */
+    boolean draw(@NonNull Canvas canvas, int width, int height);
+}
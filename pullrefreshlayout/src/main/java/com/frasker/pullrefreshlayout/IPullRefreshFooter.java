@@ -0,0 +1,9 @@
+package com.frasker.pullrefreshlayout;
+
+/**
+ * Footer shown at the bottom of {@link PullRefreshLayout} while more data is loaded.
+ */
+public interface IPullRefreshFooter {
+
+    void onStateChanged(PullRefreshLayout refreshLayout, PullRefreshLayout.State newState);
+}
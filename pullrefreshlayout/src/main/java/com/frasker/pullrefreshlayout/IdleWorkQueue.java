@@ -0,0 +1,140 @@
+package com.frasker.pullrefreshlayout;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+
+/**
+ * Runs work posted with {@link PullRefreshLayout#postIdleWork(Runnable)} in
+ * Choreographer frames while the layout is idle. Every frame drains items
+ * until half of the display frame interval is used up, at least one item runs
+ * per frame. The queue stops as soon as the layout is no longer idle and is
+ * resumed by the layout once it is idle again.
+ */
+final class IdleWorkQueue {
+
+    private final PullRefreshLayout mLayout;
+    private final FrameCallback mFrameCallback;
+    private final ArrayDeque<Runnable> mQueue = new ArrayDeque<>();
+    private long mBudgetNanos = -1;
+    private boolean mScheduled;
+
+    IdleWorkQueue(PullRefreshLayout layout) {
+        mLayout = layout;
+        mFrameCallback = Build.VERSION.SDK_INT >= 16 ? new ChoreographerCallback() : new PostOnAnimationCallback();
+    }
+
+    void post(Runnable work) {
+        mQueue.addLast(work);
+        resume();
+    }
+
+    void remove(Runnable work) {
+        while (mQueue.remove(work)) {
+            // 同一个 Runnable 可能被 post 了多次
+        }
+        if (mQueue.isEmpty()) {
+            pause();
+        }
+    }
+
+    int size() {
+        return mQueue.size();
+    }
+
+    void onAttachedToWindow() {
+        // 可能换到了刷新率不同的屏幕
+        mBudgetNanos = -1;
+        resume();
+    }
+
+    /**
+     * Schedules the next drain if the layout is idle and there is work left.
+     */
+    void resume() {
+        if (!mScheduled && !mQueue.isEmpty() && mLayout.isIdle()) {
+            mScheduled = true;
+            mFrameCallback.post();
+        }
+    }
+
+    void pause() {
+        if (mScheduled) {
+            mScheduled = false;
+            mFrameCallback.remove();
+        }
+    }
+
+    private void onFrame() {
+        mScheduled = false;
+        if (!mLayout.isIdle()) {
+            // 安排之后又开始了手势或动画，等 layout 再次空闲时恢复
+            return;
+        }
+        final long start = System.nanoTime();
+        final long budget = getBudgetNanos();
+        // 每帧至少执行一个，任务中开始了新的手势或动画时立即停止
+        do {
+            final Runnable work = mQueue.pollFirst();
+            if (work == null) {
+                return;
+            }
+            work.run();
+        } while (mLayout.isIdle() && System.nanoTime() - start < budget);
+        resume();
+    }
+
+    private long getBudgetNanos() {
+        if (mBudgetNanos < 0) {
+            // 只用半帧，剩下的留给这一帧的布局和绘制
+            mBudgetNanos = PullMetricsRecorder.getFrameIntervalNanos(mLayout) / 2;
+        }
+        return mBudgetNanos;
+    }
+
+    private interface FrameCallback {
+        void post();
+
+        void remove();
+    }
+
+    @TargetApi(16)
+    private final class ChoreographerCallback implements FrameCallback, Choreographer.FrameCallback {
+
+        @Override
+        public void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame();
+        }
+    }
+
+    private final class PostOnAnimationCallback implements FrameCallback, Runnable {
+
+        @Override
+        public void post() {
+            ViewCompat.postOnAnimation(mLayout, this);
+        }
+
+        @Override
+        public void remove() {
+            mLayout.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            onFrame();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.frasker.pullrefreshlayout;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.Interpolator;
+import android.widget.OverScroller;
+
+/**
+ * Primitive int offset animation engine used by {@link PullRefreshLayout}.
+ * <p>
+ * Values are computed from the vsync timestamp handed out by Choreographer, so
+ * the animation advances once per displayed frame at whatever rate the display
+ * runs (60/90/120 Hz). A single frame callback is created per animator and
+ * reused for every tween and fling, nothing is allocated once an animation is
+ * running.
+ * </p>
+ */
+final class OffsetAnimator {
+
+    static final int MODE_NONE = 0;
+    static final int MODE_TWEEN = 1;
+    static final int MODE_FLING = 2;
+    static final int MODE_SPRING = 3;
+
+    // 与 SpringAnimation 一致，位移小于半个像素且速度足够小时认为弹簧已经静止
+    private static final double SPRING_VALUE_THRESHOLD = 0.5;
+    private static final double SPRING_VELOCITY_THRESHOLD = SPRING_VALUE_THRESHOLD * 62.5;
+
+    interface Listener {
+        /**
+         * Called once per frame with the animated value. For a tween or a spring
+         * this is the absolute offset, for a fling the current scroller position.
+         */
+        void onAnimationUpdate(int mode, int value);
+
+        /**
+         * Called when the animation finished or was canceled. The animator is
+         * already idle, a new animation may be started from here.
+         */
+        void onAnimationEnd(int mode, boolean canceled);
+    }
+
+    private final View mView;
+    private final Listener mListener;
+    private final FrameDriver mFrameDriver;
+    private Interpolator mInterpolator;
+    private OverScroller mScroller;
+
+    private int mMode = MODE_NONE;
+    private int mGeneration; // 每次启动/取消递增，用于识别回调中重新启动的动画
+    private int mFrom;
+    private int mTo;
+    private long mDurationNanos;
+    private long mStartNanos;
+    private double mSpringValue;
+    private double mSpringVelocity;
+    private double mNaturalFreq;
+    private double mDampingRatio;
+
+    OffsetAnimator(View view, Listener listener) {
+        mView = view;
+        mListener = listener;
+        mFrameDriver = Build.VERSION.SDK_INT >= 16 ? new ChoreographerDriver() : new PostOnAnimationDriver();
+    }
+
+    void setInterpolator(Interpolator interpolator) {
+        mInterpolator = interpolator;
+    }
+
+    boolean isRunning() {
+        return mMode != MODE_NONE;
+    }
+
+    int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Animates from {@code from} to {@code to}, the first value is delivered on
+     * the next frame.
+     */
+    void start(int from, int to, int durationMs) {
+        cancel();
+        mGeneration++;
+        mMode = MODE_TWEEN;
+        mFrom = from;
+        mTo = to;
+        mDurationNanos = durationMs * 1000000L;
+        mStartNanos = -1;
+        mFrameDriver.post();
+    }
+
+    /**
+     * Animates from {@code from} to {@code to} with a damped spring that starts
+     * with the given velocity in pixels per second. The spring has unit mass.
+     */
+    void spring(int from, int to, float velocity, float stiffness, float dampingRatio) {
+        cancel();
+        mGeneration++;
+        mMode = MODE_SPRING;
+        mTo = to;
+        mSpringValue = from;
+        mSpringVelocity = velocity;
+        mNaturalFreq = Math.sqrt(stiffness);
+        mDampingRatio = dampingRatio;
+        mStartNanos = System.nanoTime();
+        mFrameDriver.post();
+    }
+
+    /**
+     * Starts a fling at position 0 with the given velocity in pixels per second.
+     *
+     * @return Whether the fling is running, {@code false} if it finished right away.
+     */
+    boolean fling(int velocityY, int minValue, int maxValue) {
+        cancel();
+        if (mScroller == null) {
+            mScroller = new OverScroller(mView.getContext());
+        }
+        mScroller.fling(
+                0, 0, // curr
+                0, velocityY, // velocity.
+                0, 0, // x
+                minValue, maxValue); // y
+        if (!mScroller.computeScrollOffset()) {
+            return false;
+        }
+        mGeneration++;
+        mMode = MODE_FLING;
+        mFrameDriver.post();
+        return true;
+    }
+
+    /**
+     * Stops the running animation and reports it as canceled.
+     */
+    void cancel() {
+        if (mMode == MODE_NONE) {
+            return;
+        }
+        final int mode = mMode;
+        mMode = MODE_NONE;
+        mGeneration++;
+        mFrameDriver.remove();
+        if (mode == MODE_FLING) {
+            mScroller.abortAnimation();
+        }
+        mListener.onAnimationEnd(mode, true);
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        final int generation = mGeneration;
+        if (mMode == MODE_TWEEN) {
+            if (mStartNanos < 0) {
+                mStartNanos = frameTimeNanos;
+            }
+            final long elapsed = frameTimeNanos - mStartNanos;
+            final boolean finished = elapsed >= mDurationNanos;
+            float fraction = finished ? 1f : (float) elapsed / mDurationNanos;
+            if (mInterpolator != null) {
+                fraction = mInterpolator.getInterpolation(fraction);
+            }
+            final int value = finished ? mTo : mFrom + Math.round((mTo - mFrom) * fraction);
+            mListener.onAnimationUpdate(MODE_TWEEN, value);
+            if (generation != mGeneration) {
+                // canceled or restarted from the update callback
+                return;
+            }
+            if (finished) {
+                mMode = MODE_NONE;
+                mListener.onAnimationEnd(MODE_TWEEN, false);
+            } else {
+                mFrameDriver.post();
+            }
+        } else if (mMode == MODE_SPRING) {
+            final long elapsed = Math.max(frameTimeNanos - mStartNanos, 0);
+            mStartNanos = frameTimeNanos;
+            updateSpring(elapsed / 1000000000.0);
+            final boolean finished = Math.abs(mSpringValue - mTo) < SPRING_VALUE_THRESHOLD
+                    && Math.abs(mSpringVelocity) < SPRING_VELOCITY_THRESHOLD;
+            final int value = finished ? mTo : (int) Math.round(mSpringValue);
+            mListener.onAnimationUpdate(MODE_SPRING, value);
+            if (generation != mGeneration) {
+                return;
+            }
+            if (finished) {
+                mMode = MODE_NONE;
+                mListener.onAnimationEnd(MODE_SPRING, false);
+            } else {
+                mFrameDriver.post();
+            }
+        } else if (mMode == MODE_FLING) {
+            if (mScroller.computeScrollOffset()) {
+                mListener.onAnimationUpdate(MODE_FLING, mScroller.getCurrY());
+                if (generation == mGeneration) {
+                    mFrameDriver.post();
+                }
+            } else {
+                mMode = MODE_NONE;
+                mListener.onAnimationEnd(MODE_FLING, false);
+            }
+        }
+    }
+
+    /**
+     * Advances the spring by {@code dt} seconds using the closed form solution of
+     * the damped harmonic oscillator, so large frame gaps do not destabilize it.
+     */
+    private void updateSpring(double dt) {
+        final double x = mSpringValue - mTo;
+        final double v = mSpringVelocity;
+        final double w = mNaturalFreq;
+        final double z = mDampingRatio;
+        final double newX;
+        final double newV;
+        if (z > 1) {
+            // over damped
+            final double root = w * Math.sqrt(z * z - 1);
+            final double gammaPlus = -z * w + root;
+            final double gammaMinus = -z * w - root;
+            final double coeffB = (gammaMinus * x - v) / (gammaMinus - gammaPlus);
+            final double coeffA = x - coeffB;
+            final double expMinus = Math.exp(gammaMinus * dt);
+            final double expPlus = Math.exp(gammaPlus * dt);
+            newX = coeffA * expMinus + coeffB * expPlus;
+            newV = coeffA * gammaMinus * expMinus + coeffB * gammaPlus * expPlus;
+        } else if (z == 1) {
+            // critically damped
+            final double coeffA = x;
+            final double coeffB = v + w * x;
+            final double exp = Math.exp(-w * dt);
+            newX = (coeffA + coeffB * dt) * exp;
+            newV = (coeffA + coeffB * dt) * exp * -w + coeffB * exp;
+        } else {
+            // under damped
+            final double dampedFreq = w * Math.sqrt(1 - z * z);
+            final double cosCoeff = x;
+            final double sinCoeff = (z * w * x + v) / dampedFreq;
+            final double exp = Math.exp(-z * w * dt);
+            final double cos = Math.cos(dampedFreq * dt);
+            final double sin = Math.sin(dampedFreq * dt);
+            newX = exp * (cosCoeff * cos + sinCoeff * sin);
+            newV = newX * -z * w + exp * (-dampedFreq * cosCoeff * sin + dampedFreq * sinCoeff * cos);
+        }
+        mSpringValue = mTo + newX;
+        mSpringVelocity = newV;
+    }
+
+    private interface FrameDriver {
+        void post();
+
+        void remove();
+    }
+
+    @TargetApi(16)
+    private final class ChoreographerDriver implements FrameDriver, Choreographer.FrameCallback {
+
+        @Override
+        public void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            OffsetAnimator.this.doFrame(frameTimeNanos);
+        }
+    }
+
+    private final class PostOnAnimationDriver implements FrameDriver, Runnable {
+
+        @Override
+        public void post() {
+            ViewCompat.postOnAnimation(mView, this);
+        }
+
+        @Override
+        public void remove() {
+            mView.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            doFrame(System.nanoTime());
+        }
+    }
+}
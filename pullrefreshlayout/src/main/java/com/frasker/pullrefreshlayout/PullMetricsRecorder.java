@@ -0,0 +1,182 @@
+package com.frasker.pullrefreshlayout;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Records {@link PullRefreshMetrics} for {@link PullRefreshLayout}. Frames are
+ * counted with Choreographer while a phase is running, the timed sections are
+ * additionally wrapped in Trace sections when tracing is enabled.
+ */
+final class PullMetricsRecorder {
+
+    static final int SECTION_SET_OFFSET = 0;
+    static final int SECTION_CHANGE_OFFSET = 1;
+    static final int SECTION_HEADER = 2;
+
+    private static final String[] SECTION_NAMES = new String[]{
+            "PullRefreshLayout#setTargetOffsetTopAndBottom",
+            "PullRefreshLayout#changeOffset",
+            "PullRefreshLayout#headerCallback",
+    };
+
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private final PullRefreshLayout mLayout;
+    private final PullRefreshMetrics mMetrics = new PullRefreshMetrics();
+    private final FrameCallback mFrameCallback;
+    private PullRefreshLayout.OnPullMetricsListener mListener;
+    private boolean mTraceEnabled;
+    private long mFrameIntervalNanos = -1; // 缓存的帧间隔，attach 到新的窗口时重新获取
+    private boolean mActive;
+    private long mStartNanos;
+    private long mLastFrameNanos;
+
+    PullMetricsRecorder(PullRefreshLayout layout) {
+        mLayout = layout;
+        mFrameCallback = Build.VERSION.SDK_INT >= 16 ? new FrameCallback() : null;
+    }
+
+    void setListener(PullRefreshLayout.OnPullMetricsListener listener) {
+        mListener = listener;
+    }
+
+    void setTraceEnabled(boolean traceEnabled) {
+        mTraceEnabled = traceEnabled;
+    }
+
+    void onAttachedToWindow() {
+        // 可能换到了刷新率不同的屏幕
+        mFrameIntervalNanos = -1;
+    }
+
+    /**
+     * Starts recording a phase, a phase of another kind that is still running
+     * is reported first.
+     */
+    void begin(PullRefreshMetrics.Phase phase) {
+        if (mActive) {
+            if (mMetrics.mPhase == phase) {
+                return;
+            }
+            end();
+        }
+        mMetrics.clear();
+        mMetrics.mPhase = phase;
+        if (mFrameIntervalNanos < 0) {
+            mFrameIntervalNanos = getFrameIntervalNanos(mLayout);
+        }
+        mMetrics.mFrameIntervalNanos = mFrameIntervalNanos;
+        mStartNanos = System.nanoTime();
+        mLastFrameNanos = 0;
+        mActive = true;
+        if (mFrameCallback != null) {
+            mFrameCallback.post();
+        }
+    }
+
+    void end(PullRefreshMetrics.Phase phase) {
+        if (mActive && mMetrics.mPhase == phase) {
+            end();
+        }
+    }
+
+    void end() {
+        if (!mActive) {
+            return;
+        }
+        mActive = false;
+        if (mFrameCallback != null) {
+            mFrameCallback.remove();
+        }
+        mMetrics.mDurationNanos = System.nanoTime() - mStartNanos;
+        if (mListener != null) {
+            mListener.onPullMetrics(mLayout, mMetrics);
+        }
+    }
+
+    long beginSection(int section) {
+        if (mTraceEnabled) {
+            TraceCompat.beginSection(SECTION_NAMES[section]);
+        }
+        return System.nanoTime();
+    }
+
+    void endSection(int section, long startNanos) {
+        final long elapsed = System.nanoTime() - startNanos;
+        if (mTraceEnabled) {
+            TraceCompat.endSection();
+        }
+        if (!mActive) {
+            return;
+        }
+        switch (section) {
+            case SECTION_SET_OFFSET:
+                mMetrics.mSetOffsetNanos += elapsed;
+                break;
+            case SECTION_CHANGE_OFFSET:
+                mMetrics.mChangeOffsetNanos += elapsed;
+                break;
+            case SECTION_HEADER:
+                mMetrics.mHeaderCallbackNanos += elapsed;
+                mMetrics.mHeaderCallbackCount++;
+                break;
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (mLastFrameNanos != 0) {
+            final long interval = mMetrics.mFrameIntervalNanos;
+            final long missed = (frameTimeNanos - mLastFrameNanos + interval / 2) / interval - 1;
+            if (missed > 0) {
+                mMetrics.mDroppedFrames += missed;
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mMetrics.mFrameCount++;
+    }
+
+    /**
+     * @return Frame interval of the display the view is shown on, the default
+     * display while it is not attached, 60 Hz if it is unknown.
+     */
+    static long getFrameIntervalNanos(View view) {
+        Display display = ViewCompat.getDisplay(view);
+        if (display == null) {
+            final WindowManager wm = (WindowManager) view.getContext().getSystemService(Context.WINDOW_SERVICE);
+            display = wm != null ? wm.getDefaultDisplay() : null;
+        }
+        final float refreshRate = display != null ? display.getRefreshRate() : 0;
+        if (refreshRate < 1f) {
+            return DEFAULT_FRAME_INTERVAL_NANOS;
+        }
+        return (long) (1000000000L / refreshRate);
+    }
+
+    @TargetApi(16)
+    private final class FrameCallback implements Choreographer.FrameCallback {
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mActive) {
+                onFrame(frameTimeNanos);
+                post();
+            }
+        }
+    }
+}
@@ -1,29 +1,45 @@
 package com.frasker.pullrefreshlayout;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.view.AbsSavedState;
 import android.support.v4.view.NestedScrollingChild2;
 import android.support.v4.view.NestedScrollingChildHelper;
 import android.support.v4.view.NestedScrollingParent2;
 import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ScrollingView;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.widget.ListViewCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
 import android.widget.AbsListView;
-import android.widget.ListView;
-import android.widget.OverScroller;
+
+import com.frasker.pullrefreshlayout.core.DefaultPullEngine;
+import com.frasker.pullrefreshlayout.core.PullEngine;
+
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * The EasyRefreshLayout should be used whenever the user can refresh the
@@ -53,39 +69,77 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     private static final int MAX_OFFSET_ANIMATION_DURATION = 600; // ms
     private static final float DECELERATE_INTERPOLATION_FACTOR = 2f;
     private static final int INVALID_POINTER = -1;
-    private float dragRate = .5f;
 
     // Default offset in dips from the top of the view to where the progress spinner should stop
     private static final int DEFAULT_MAX_DRAG_DISTANCE = 160;
+    // 预测松手位置时向后看的时间
+    private static final int SPECULATIVE_LOOKAHEAD_MS = 100;
+
+    // Default spring used by the spring settle, same as SpringForce.STIFFNESS_MEDIUM without bouncing
+    private static final float DEFAULT_SPRING_STIFFNESS = 1500f;
+    private static final float DEFAULT_SPRING_DAMPING_RATIO = 1f;
+    // 自动刷新连续失败后的最大间隔
+    private static final long DEFAULT_AUTO_REFRESH_MAX_BACKOFF = 30 * 60 * 1000L;
 
     private View mTarget; // the target of the gesture
     OnRefreshListener mListener;
+    OnLoadMoreListener mLoadMoreListener;
+    OnPrepareRefreshListener mPrepareRefreshListener;
+    AsyncRefreshListener mAsyncRefreshListener;
+    OnRevalidateListener mRevalidateListener;
     private int mTouchSlop;
 
     private final NestedScrollingParentHelper mNestedScrollingParentHelper;
     private final NestedScrollingChildHelper mNestedScrollingChildHelper;
     private final int[] mParentScrollConsumed = new int[2];
     private final int[] mParentOffsetInWindow = new int[2];
-    private int mLastMotionY;
+    private float mLastMotionY;
 
     private boolean mNestedScrollInProgress;
     private boolean mIsBeingDragged;
     private boolean mIsOverAnimating = false; // 是否执行过渡动画中
     boolean mRefreshing = false; // 是否数据刷新过程中
     private boolean mIsPinContent = false; // 下拉时内容不动模式，原生SwipeRefreshLayout效果
+    private boolean mKeepTargetFullHeight = false; // 下拉时内容保持完整高度，拖拽过程不触发重新布局
+    private boolean mRenderThreadSettle = false; // 释放/回弹动画交给 RenderThread 执行
+    private boolean mHardwareLayers = false; // 拖拽和动画过程中 header 和内容使用硬件层
+    private View mLayerHeader; // 当前提升为硬件层的 view，结束时恢复原来的 layer type
+    private View mLayerTarget;
+    private int mHeaderLayerType;
+    private int mTargetLayerType;
+    private int mTargetOverScrollMode = -1; // header 处理下拉时关闭内容的 overscroll 效果，-1 为未关闭
+    private boolean mSpringSettle = false; // 释放/回弹使用带初速度的弹簧动画
+    private float mSpringStiffness = DEFAULT_SPRING_STIFFNESS;
+    private float mSpringDampingRatio = DEFAULT_SPRING_DAMPING_RATIO;
+    private float mNestedPreFlingVelocity; // 嵌套滑动松手时的速度，onStopNestedScroll 时使用
+    private int mLastFlingValue; // fling 上一帧的 scroller 位置
     private int mRefreshSuccessShowDuration = 200; // 刷新成功后展示时间
     private int mRefreshFailureShowDuration = 200; // 刷新失败后展示时间
     private int mHeaderOffset = 0; // 支持头部偏移量
-    private int mTotalDragDistance = -1;
-    private int mTriggerRefreshDistance = -1; // 触发显示释放刷新的距离
+    private final PullEngine mEngine = new DefaultPullEngine(); // 阻尼、状态判断等与平台无关的计算
+    private final boolean mLegacyDragRate = overridesDragRate(getClass(), int.class); // 子类重写了废弃的 calculateOffsetByDragRate(int)
+    private final boolean mCustomDragRate = mLegacyDragRate
+            || overridesDragRate(getClass(), float.class, float.class); // 子类重写了阻尼计算，拖拽不能直接交给 engine
     private int mRefreshingHeight = -1; // 正在刷新时显示的高度
+    private boolean mLoadMoreEnabled = false; // 是否支持加载更多
+    private int mLoadMorePrefetchItems = 0; // 距离列表底部还剩多少个 item 时触发加载更多
+    private int mLoadMorePrefetchDistance = 0; // 距离列表底部还剩多少像素时触发加载更多
+    private State mLoadState = State.NONE; // 加载更多的状态，与下拉刷新互不影响
+    private CancellationSignal mPrepareSignal; // 提前开始刷新时交给调用方的取消信号
+    private float mDragVelocity; // 拖拽过程中 offset 的速度，像素/秒
+    private float mLastDragOffset;
+    private long mLastDragTime;
+    private long mLastTouchEventTime; // 最近一次经过本 layout 的触摸事件时间，嵌套滑动用它计算速度
     private VelocityTracker mVelocityTracker;
-    private int mCurrentTargetOffsetTop = 0;
-    private Runnable mFlingRunnable;
-    OverScroller mScroller;
+    private int mCurrentTargetOffsetTop = 0; // 已经应用到 view 上的偏移，取整后的 mTargetOffset
+    private float mTargetOffset = 0; // 未取整的偏移，阻尼计算和 header 进度都基于它
     private State mState = State.NONE;
 
-    private ValueAnimator mOffsetAnimator;
+    private final OffsetAnimator mOffsetAnimator;
+    private OffsetAnimationListener mOffsetListener;
+    private boolean mSettling; // RenderThread 回弹动画执行中
+    private int mSettleOffset; // RenderThread 回弹动画需要移动的距离
+    private OffsetAnimationListener mSettleListener;
 
     private int mActivePointerId = INVALID_POINTER;
     private final DecelerateInterpolator mDecelerateInterpolator;
@@ -94,10 +148,41 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     };
 
     View mHeaderView;
+    private View mDetachedHeader; // 空闲时移除的 header，再次下拉时直接复用
+    private HeaderFactory mHeaderFactory; // 懒加载 header
+    private int mHeaderLayoutRes; // 懒加载 header 的布局
+    private int mHeaderIdleTimeout = 0; // 懒加载的 header 重置后空闲多久从布局中移除，0 为不移除
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+    private boolean mFixedHeaderHeight = false; // header 高度固定为 mRefreshingHeight，不随父布局的高度重新测量
+    View mFooterView;
+    private IPullRefreshDrawable mHeaderDrawable; // 没有 header view 时直接绘制的 header
+    private HeaderCallbackDispatcher mHeaderCallbackDispatcher; // 不为空时 header 回调每帧分发一次
 
     boolean mNotify;
+    boolean mNotifyAsync; // 刷新动画结束后需要启动 AsyncRefreshListener，手势和 setRefreshing 都会触发
+    private RefreshHandle mActiveRefresh; // 正在执行的异步刷新
+    private CancellationSignal mRefreshSignal;
+    private int mRefreshTimeout = 0; // 异步刷新超时时间，超时后按刷新失败处理
+    private long mRefreshFreshnessTtl = 0; // 上次刷新成功后多久内的下拉不再真正刷新
+    private long mLastRefreshSuccessTime = 0; // 上次刷新成功的时间，SystemClock.elapsedRealtime()
+    private boolean mRestoreRefreshing; // 恢复了刷新中的状态，等布局完成知道 header 高度后再移动到刷新位置
 
     private OnChildScrollUpCallback mChildScrollUpCallback;
+    private ScrollabilityProbe mScrollabilityProbe; // 判断内容能否继续下拉
+    private boolean mCanChildScrollUp;
+    private boolean mCanChildScrollUpValid; // 缓存的结果是否有效，内容滚动或新的事件序列开始时失效
+
+    private PullMetricsRecorder mMetricsRecorder; // 非空时记录每次拖拽/fling/动画的帧耗时
+    private boolean mMetricsTraceEnabled; // 创建 recorder 时应用，listener 设置前后调用都有效
+    private GestureTraceRecorder mTraceRecorder; // 非空时记录到达的触摸事件和嵌套滑动回调
+    GestureTraceReplayer mTraceReplayer; // 回放 trace 时收集状态变化
+    private AutoRefreshScheduler mAutoRefreshScheduler; // 周期刷新和恢复可见时刷新
+    private RefreshResultDispatcher mRefreshResultDispatcher; // 后台计算 diff 的刷新结果
+    private long mFrameIntervalNanos = -1; // 缓存的帧间隔，attach 到新的窗口时重新获取
+    private IdleWorkQueue mIdleWorkQueue; // 只在空闲帧执行的任务
+    private boolean mGestureInProgress; // 手指按下到抬起之间
+    private long mShowActionTime; // 刷新结束后开始收起的时间，SystemClock.uptimeMillis()
 
     public enum State {
         NONE,
@@ -107,60 +192,189 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         REFRESHING,
         REFRESH_SUCCESS,
         REFRESH_FAILURE,
+        LOADING,
+        LOAD_SUCCESS,
+        LOAD_FAILURE,
     }
 
-    private Animator.AnimatorListener mRefreshListener = new Animator.AnimatorListener() {
-        @Override
-        public void onAnimationStart(Animator animation) {
-
-        }
-
+    private OffsetAnimationListener mRefreshListener = new OffsetAnimationListener() {
         @Override
-        public void onAnimationEnd(Animator animation) {
+        public void onAnimationEnd() {
             mIsOverAnimating = false;
             if (mRefreshing) {
                 changeState(State.REFRESHING);
                 changeOffset();
+                if (mNotify && isRefreshFresh()) {
+                    // 数据还新鲜，下拉不再请求服务端
+                    mNotify = false;
+                    mNotifyAsync = false;
+                    if (mRevalidateListener != null) {
+                        mRevalidateListener.onRevalidate();
+                    } else {
+                        completeRefresh(true, false);
+                    }
+                    return;
+                }
                 if (mNotify) {
+                    // 只通知一次，刷新过程中再次拖动回弹不会重复触发
+                    mNotify = false;
                     if (mListener != null) {
                         mListener.onRefresh();
                     }
                 }
+                if (mNotifyAsync && mAsyncRefreshListener != null) {
+                    mNotifyAsync = false;
+                    startAsyncRefresh();
+                }
             } else {
                 reset();
             }
         }
 
         @Override
-        public void onAnimationCancel(Animator animation) {
+        public void onAnimationCancel() {
             mIsOverAnimating = false;
         }
+    };
 
+    private final OffsetAnimator.Listener mOffsetAnimatorListener = new OffsetAnimator.Listener() {
         @Override
-        public void onAnimationRepeat(Animator animation) {
+        public void onAnimationUpdate(int mode, int value) {
+            if (mode == OffsetAnimator.MODE_FLING) {
+                // scroller 位置是从松手开始的累计位移，每帧只移动增量，不越过顶部
+                final int offset = value - mLastFlingValue;
+                mLastFlingValue = value;
+                setTargetOffsetTopAndBottom(Math.max(offset, -mCurrentTargetOffsetTop));
+            } else {
+                if (value < 0) {
+                    // 弹簧回弹到顶部时不能越过 0
+                    value = 0;
+                } else {
+                    // 松手速度很大时弹簧也不能越过最大下拉距离
+                    value = Math.min(value, Math.max(mEngine.getTotalDragDistance(), getRefreshingHeight()));
+                }
+                moveTargetTo(value);
+            }
+        }
 
+        @Override
+        public void onAnimationEnd(int mode, boolean canceled) {
+            if (mode == OffsetAnimator.MODE_FLING) {
+                if (!canceled) {
+                    onFlingFinished();
+                }
+                // 松手时 fling 还在执行，fling 结束后没有开始新的动画时在这里恢复
+                onMovementEnd();
+                return;
+            }
+            endMetrics(PullRefreshMetrics.Phase.ANIMATION);
+            // 与 ValueAnimator 一致，取消时先回调 onAnimationCancel 再回调 onAnimationEnd
+            final OffsetAnimationListener listener = mOffsetListener;
+            if (listener != null) {
+                if (canceled) {
+                    listener.onAnimationCancel();
+                }
+                listener.onAnimationEnd();
+            }
+            onMovementEnd();
         }
     };
 
     void reset() {
+        if (!mRefreshing) {
+            cancelPrepareRefresh();
+        }
         cancelAnimator();
         setTargetOffsetTopAndBottom(-mCurrentTargetOffsetTop);
         changeState(State.NONE);
         changeOffset();
-        ((IPullRefreshHeader) mHeaderView).onReset(PullRefreshLayout.this);
+        flushHeaderCallbacks();
+        final IPullRefreshHeader header = getHeader();
+        if (header != null) {
+            final long start = beginMetricsSection(PullMetricsRecorder.SECTION_HEADER);
+            header.onReset(PullRefreshLayout.this);
+            endMetricsSection(PullMetricsRecorder.SECTION_HEADER, start);
+            scheduleHeaderDetach();
+        }
         mCurrentTargetOffsetTop = 0;
+        mTargetOffset = 0;
+        if (mRefreshResultDispatcher != null && mRefreshResultDispatcher.hasPending()) {
+            // 收起动画结束后的下一帧再应用刷新结果
+            ViewCompat.postOnAnimation(this, applyRefreshResultAction);
+        }
     }
 
     private void changeState(State state) {
         if (state != mState) {
             mState = state;
-            ((IPullRefreshHeader) mHeaderView).onStateChanged(PullRefreshLayout.this, mState);
+            if (mTraceReplayer != null) {
+                mTraceReplayer.onStateChanged(state);
+            }
+            if (mHeaderCallbackDispatcher != null) {
+                mHeaderCallbackDispatcher.postState(state);
+            } else {
+                dispatchStateChanged(state);
+            }
+        }
+    }
+
+    void dispatchStateChanged(State state) {
+        final IPullRefreshHeader header = getHeader();
+        if (header != null) {
+            final long start = beginMetricsSection(PullMetricsRecorder.SECTION_HEADER);
+            header.onStateChanged(PullRefreshLayout.this, state);
+            endMetricsSection(PullMetricsRecorder.SECTION_HEADER, start);
+            if (header == mHeaderDrawable) {
+                invalidate();
+            }
         }
     }
 
     private void changeOffset() {
-        if (mHeaderView != null) {
-            ((IPullRefreshHeader) mHeaderView).onOffsetTopChanged(PullRefreshLayout.this, mCurrentTargetOffsetTop, (float) mCurrentTargetOffsetTop / mTotalDragDistance, mState);
+        if (mHeaderCallbackDispatcher != null) {
+            mHeaderCallbackDispatcher.postOffset(mCurrentTargetOffsetTop, mEngine.getProgress(mTargetOffset), mState);
+        } else {
+            dispatchOffsetChanged(mCurrentTargetOffsetTop, mEngine.getProgress(mTargetOffset), mState);
+        }
+    }
+
+    void dispatchOffsetChanged(int offset, float progress, State state) {
+        final IPullRefreshHeader header = getHeader();
+        if (header != null) {
+            final long start = beginMetricsSection(PullMetricsRecorder.SECTION_CHANGE_OFFSET);
+            final long headerStart = beginMetricsSection(PullMetricsRecorder.SECTION_HEADER);
+            header.onOffsetTopChanged(PullRefreshLayout.this, offset, progress, state);
+            endMetricsSection(PullMetricsRecorder.SECTION_HEADER, headerStart);
+            endMetricsSection(PullMetricsRecorder.SECTION_CHANGE_OFFSET, start);
+        }
+    }
+
+    // 逐帧分发模式下，onReady/onReset 之前先把积攒的回调分发出去，保证顺序
+    private void flushHeaderCallbacks() {
+        if (mHeaderCallbackDispatcher != null) {
+            mHeaderCallbackDispatcher.flush();
+        }
+    }
+
+    private long beginMetricsSection(int section) {
+        return mMetricsRecorder != null ? mMetricsRecorder.beginSection(section) : 0;
+    }
+
+    private void endMetricsSection(int section, long start) {
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.endSection(section, start);
+        }
+    }
+
+    private void beginMetrics(PullRefreshMetrics.Phase phase) {
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.begin(phase);
+        }
+    }
+
+    private void endMetrics(PullRefreshMetrics.Phase phase) {
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.end(phase);
         }
     }
 
@@ -168,14 +382,31 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     public void setEnabled(boolean enabled) {
         super.setEnabled(enabled);
         if (!enabled) {
+            abortPendingRefresh();
+            cancelAsyncRefresh();
             reset();
         }
+        updateAutoRefresh();
     }
 
     @Override
     protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(mOnScrollChangedListener);
         super.onDetachedFromWindow();
+        if (mAutoRefreshScheduler != null) {
+            mAutoRefreshScheduler.setAttached(false);
+        }
+        mGestureInProgress = false;
+        abortPendingRefresh();
+        cancelAsyncRefresh();
         reset();
+        flushHeaderCallbacks();
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.end();
+        }
+        restoreLayers();
+        // reset 中结束动画时可能重新安排了空闲任务
+        pauseIdleWork();
     }
 
     /**
@@ -200,20 +431,45 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
         setWillNotDraw(false);
         mDecelerateInterpolator = new DecelerateInterpolator(DECELERATE_INTERPOLATION_FACTOR);
+        mOffsetAnimator = new OffsetAnimator(this, mOffsetAnimatorListener);
+        mOffsetAnimator.setInterpolator(mDecelerateInterpolator);
 
         final DisplayMetrics metrics = getResources().getDisplayMetrics();
 
         setChildrenDrawingOrderEnabled(true);
 
-        dragRate = typedArray.getFloat(R.styleable.PullRefreshLayout_p_dragRate, .5f);
+        mEngine.setDragRate(typedArray.getFloat(R.styleable.PullRefreshLayout_p_dragRate, .5f));
 
-        mTotalDragDistance = (int) typedArray.getDimension(R.styleable.PullRefreshLayout_p_maxDragDistance, (int) (DEFAULT_MAX_DRAG_DISTANCE * metrics.density));
-        mTriggerRefreshDistance = (int) typedArray.getDimension(R.styleable.PullRefreshLayout_p_triggerRefreshDistance, mTotalDragDistance * .6f);
+        final int totalDragDistance = (int) typedArray.getDimension(R.styleable.PullRefreshLayout_p_maxDragDistance, (int) (DEFAULT_MAX_DRAG_DISTANCE * metrics.density));
+        mEngine.setTotalDragDistance(totalDragDistance);
+        mEngine.setTriggerRefreshDistance(Math.min((int) typedArray.getDimension(R.styleable.PullRefreshLayout_p_triggerRefreshDistance, totalDragDistance * .6f), totalDragDistance));
         mRefreshSuccessShowDuration = typedArray.getInteger(R.styleable.PullRefreshLayout_p_refreshSuccessShowDuration, 200);
         mRefreshFailureShowDuration = typedArray.getInteger(R.styleable.PullRefreshLayout_p_refreshFailureShowDuration, 200);
         mRefreshingHeight = (int) typedArray.getDimension(R.styleable.PullRefreshLayout_p_refreshingHeight, -1);
-        if (mTriggerRefreshDistance > mTotalDragDistance) {
-            mTriggerRefreshDistance = mTotalDragDistance;
+        mKeepTargetFullHeight = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_keepTargetFullHeight, false);
+        mFixedHeaderHeight = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_fixedHeaderHeight, false);
+        mRenderThreadSettle = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_renderThreadSettle, false);
+        mHardwareLayers = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_hardwareLayers, false);
+        mSpringSettle = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_springSettle, false);
+        mSpringStiffness = typedArray.getFloat(R.styleable.PullRefreshLayout_p_springStiffness, DEFAULT_SPRING_STIFFNESS);
+        mSpringDampingRatio = typedArray.getFloat(R.styleable.PullRefreshLayout_p_springDampingRatio, DEFAULT_SPRING_DAMPING_RATIO);
+        mLoadMoreEnabled = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_loadMoreEnabled, false);
+        mLoadMorePrefetchItems = typedArray.getInteger(R.styleable.PullRefreshLayout_p_loadMorePrefetchItems, 0);
+        mLoadMorePrefetchDistance = typedArray.getDimensionPixelSize(R.styleable.PullRefreshLayout_p_loadMorePrefetchDistance, 0);
+        mRefreshTimeout = typedArray.getInteger(R.styleable.PullRefreshLayout_p_refreshTimeout, 0);
+        mRefreshFreshnessTtl = typedArray.getInteger(R.styleable.PullRefreshLayout_p_refreshFreshnessTtl, 0);
+        final boolean coalesceHeaderCallbacks = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_coalesceHeaderCallbacks, false);
+        mHeaderLayoutRes = typedArray.getResourceId(R.styleable.PullRefreshLayout_p_headerLayout, 0);
+        mHeaderIdleTimeout = typedArray.getInteger(R.styleable.PullRefreshLayout_p_headerIdleTimeout, 0);
+        final int autoRefreshInterval = typedArray.getInteger(R.styleable.PullRefreshLayout_p_autoRefreshInterval, 0);
+        final boolean autoRefreshOnResume = typedArray.getBoolean(R.styleable.PullRefreshLayout_p_autoRefreshOnResume, false);
+        final int autoRefreshMaxBackoff = typedArray.getInteger(R.styleable.PullRefreshLayout_p_autoRefreshMaxBackoff, (int) DEFAULT_AUTO_REFRESH_MAX_BACKOFF);
+        typedArray.recycle();
+        setCoalesceHeaderCallbacks(coalesceHeaderCallbacks);
+        if (autoRefreshInterval > 0 || autoRefreshOnResume) {
+            setAutoRefreshMaxBackoff(autoRefreshMaxBackoff);
+            setAutoRefreshOnResume(autoRefreshOnResume);
+            setAutoRefreshInterval(autoRefreshInterval);
         }
 
         mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
@@ -229,18 +485,33 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     @Override
     protected void onFinishInflate() {
         int childCount = getChildCount();
-        if (childCount > 2)
-            throw new IllegalStateException("only support two child");
+        if (childCount > 3)
+            throw new IllegalStateException("only support header, content and footer child");
         else if (childCount == 1) {
             mTarget = getChildAt(0);
         } else if (childCount == 2) {
+            if (getChildAt(0) instanceof IPullRefreshHeader) {
+                mHeaderView = (View) getChildAt(0);
+                mTarget = getChildAt(1);
+            } else if (getChildAt(1) instanceof IPullRefreshFooter) {
+                mTarget = getChildAt(0);
+                mFooterView = getChildAt(1);
+            } else {
+                mTarget = getChildAt(1);
+            }
+        } else if (childCount == 3) {
             if (getChildAt(0) instanceof IPullRefreshHeader) {
                 mHeaderView = (View) getChildAt(0);
             }
             mTarget = getChildAt(1);
+            if (getChildAt(2) instanceof IPullRefreshFooter) {
+                mFooterView = getChildAt(2);
+            }
         }
         if (mHeaderView != null)
             mHeaderView.bringToFront();
+        if (mFooterView != null)
+            mFooterView.setVisibility(INVISIBLE);
         super.onFinishInflate();
     }
 
@@ -262,17 +533,23 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     public void setRefreshing(boolean refreshing, boolean animating) {
         if (refreshing && !mRefreshing) {
             // show
+            ensureHeader();
             mRefreshing = true;
             mNotify = false;
+            mNotifyAsync = true;
             if (animating) {
-                animateOffsetTo(mRefreshingHeight > 0 ? mRefreshingHeight : mHeaderView.getHeight(), 0, mRefreshListener);
+                animateOffsetTo(getRefreshingHeight(), 0, mRefreshListener);
             } else {
-                animateOffsetWithDuration(mRefreshingHeight > 0 ? mRefreshingHeight : mHeaderView.getHeight(), 0, mRefreshListener);
+                animateOffsetWithDuration(getRefreshingHeight(), 0, mRefreshListener);
             }
         } else if (!refreshing && mRefreshing) {
             mNotify = false;
+            mNotifyAsync = false;
+            cancelAsyncRefresh();
             ensureTarget();
             mRefreshing = false;
+            // 提前开始的请求可能还没结束，刷新已经结束不再需要
+            cancelPrepareRefresh();
             if (animating) {
                 animateOffsetTo(0, 0, mRefreshListener);
             } else {
@@ -282,19 +559,226 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     }
 
     public void setRefreshComplete(boolean success) {
+        completeRefresh(success, true);
+    }
+
+    private void completeRefresh(boolean success, boolean refreshed) {
         if (mRefreshing) {
+            if (success && refreshed) {
+                mLastRefreshSuccessTime = SystemClock.elapsedRealtime();
+            }
             mNotify = false;
+            mNotifyAsync = false;
+            clearAsyncRefresh();
             ensureTarget();
             mRefreshing = false;
+            // 提前开始的请求可能还没结束，刷新已经结束不再需要
+            cancelPrepareRefresh();
             changeState(success ? State.REFRESH_SUCCESS : State.REFRESH_FAILURE);
             changeOffset();
             removeCallbacks(showAction);
-            postDelayed(showAction, success ? mRefreshSuccessShowDuration : mRefreshFailureShowDuration);
+            final int showDuration = success ? mRefreshSuccessShowDuration : mRefreshFailureShowDuration;
+            mShowActionTime = SystemClock.uptimeMillis() + showDuration;
+            postDelayed(showAction, showDuration);
+            if (mAutoRefreshScheduler != null) {
+                mAutoRefreshScheduler.onRefreshComplete(success);
+            }
+        }
+    }
+
+    /**
+     * Finish the refresh successfully with new data for the RecyclerView target.
+     * The diff between the data the adapter shows and {@code newList} is computed
+     * on a background executor, see {@link #setRefreshResultExecutor(Executor)}.
+     * The refresh completes once the diff is ready and the result is applied
+     * either while REFRESH_SUCCESS is showing or right after the collapse
+     * animation, so the rebind does not land in the animation frames. If the
+     * diff throws, the refresh completes with REFRESH_FAILURE instead.
+     *
+     * @param newList      The refreshed data, handed back to {@code listener}.
+     * @param diffCallback Callback comparing the data the adapter shows now with {@code newList}.
+     * @param listener     Swaps the data of the adapter, the updates are dispatched to
+     *                     the adapter of the RecyclerView target right after it returns.
+     */
+    public <T> void setRefreshComplete(@NonNull List<T> newList, @NonNull DiffUtil.Callback diffCallback,
+                                       @NonNull OnRefreshResultListener<T> listener) {
+        setRefreshComplete(newList, diffCallback, true, listener);
+    }
+
+    /**
+     * @param detectMoves Whether the diff should detect moved items, see
+     *                    {@link DiffUtil#calculateDiff(DiffUtil.Callback, boolean)}.
+     * @see #setRefreshComplete(List, DiffUtil.Callback, OnRefreshResultListener)
+     */
+    public <T> void setRefreshComplete(@NonNull List<T> newList, @NonNull DiffUtil.Callback diffCallback,
+                                       boolean detectMoves, @NonNull OnRefreshResultListener<T> listener) {
+        if (mRefreshResultDispatcher == null) {
+            mRefreshResultDispatcher = new RefreshResultDispatcher(this);
+        }
+        // 刷新在 diff 计算完成后才结束，计算失败时按刷新失败处理
+        mRefreshResultDispatcher.submit(newList, diffCallback, detectMoves, listener);
+    }
+
+    /**
+     * Set the executor the diffs of
+     * {@link #setRefreshComplete(List, DiffUtil.Callback, OnRefreshResultListener)}
+     * are computed on, {@code null} for a shared background thread.
+     */
+    public void setRefreshResultExecutor(@Nullable Executor executor) {
+        if (mRefreshResultDispatcher == null) {
+            mRefreshResultDispatcher = new RefreshResultDispatcher(this);
+        }
+        mRefreshResultDispatcher.setExecutor(executor);
+    }
+
+    void onRefreshResultReady() {
+        completeRefresh(true, true);
+        if (isRefreshResultWindow()) {
+            mRefreshResultDispatcher.applyPending();
+        }
+    }
+
+    void onRefreshResultFailed(RuntimeException e) {
+        Log.e(TAG, "Failed to compute the refresh result", e);
+        completeRefresh(false, true);
+    }
+
+    /**
+     * 是否可以在当前帧应用刷新结果：成功/失败状态展示期间 header 静止，剩余时间不足一帧时留到收起之后；
+     * 拖拽和动画过程中都不应用
+     */
+    private boolean isRefreshResultWindow() {
+        if (!ViewCompat.isAttachedToWindow(this)) {
+            return true;
+        }
+        if (mIsOverAnimating || mIsBeingDragged || mNestedScrollInProgress) {
+            return false;
+        }
+        if (mState == State.REFRESH_SUCCESS || mState == State.REFRESH_FAILURE) {
+            // 至少还要剩余一帧
+            return SystemClock.uptimeMillis() + getFrameIntervalNanos() / 1000000 <= mShowActionTime;
+        }
+        return mState == State.NONE;
+    }
+
+    private long getFrameIntervalNanos() {
+        if (mFrameIntervalNanos < 0) {
+            mFrameIntervalNanos = PullMetricsRecorder.getFrameIntervalNanos(this);
         }
+        return mFrameIntervalNanos;
     }
 
+    private final Runnable applyRefreshResultAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mRefreshResultDispatcher != null && isRefreshResultWindow()) {
+                mRefreshResultDispatcher.applyPending();
+            }
+        }
+    };
+
+    /**
+     * Refresh periodically while the layout is attached, shown and enabled. The
+     * refresh listeners are notified like after a pull. The next refresh is
+     * scheduled when the previous one completes, after a REFRESH_FAILURE the
+     * interval doubles for every failure in a row up to
+     * {@link #setAutoRefreshMaxBackoff(long)}.
+     *
+     * @param mAutoRefreshInterval Time in ms between refreshes, 0 disables periodic refreshes.
+     */
+    public void setAutoRefreshInterval(long mAutoRefreshInterval) {
+        if (mAutoRefreshInterval <= 0 && mAutoRefreshScheduler == null) {
+            return;
+        }
+        ensureAutoRefreshScheduler().setInterval(mAutoRefreshInterval);
+        releaseIdleAutoRefreshScheduler();
+    }
+
+    /**
+     * Refresh whenever the layout becomes attached, shown and enabled again,
+     * unless the content is still fresh, see {@link #setRefreshFreshnessTtl(long)},
+     * or the last refresh failed less than the backoff ago.
+     */
+    public void setAutoRefreshOnResume(boolean mAutoRefreshOnResume) {
+        if (!mAutoRefreshOnResume && mAutoRefreshScheduler == null) {
+            return;
+        }
+        ensureAutoRefreshScheduler().setRefreshOnResume(mAutoRefreshOnResume);
+        releaseIdleAutoRefreshScheduler();
+    }
+
+    /**
+     * @param mAutoRefreshMaxBackoff Maximum time in ms between automatic refreshes
+     *                               after failures, 0 for no limit. Defaults to 30 minutes.
+     */
+    public void setAutoRefreshMaxBackoff(long mAutoRefreshMaxBackoff) {
+        ensureAutoRefreshScheduler().setMaxBackoff(mAutoRefreshMaxBackoff);
+    }
+
+    private AutoRefreshScheduler ensureAutoRefreshScheduler() {
+        if (mAutoRefreshScheduler == null) {
+            mAutoRefreshScheduler = new AutoRefreshScheduler(this);
+            mAutoRefreshScheduler.setMaxBackoff(DEFAULT_AUTO_REFRESH_MAX_BACKOFF);
+        }
+        return mAutoRefreshScheduler;
+    }
+
+    private void releaseIdleAutoRefreshScheduler() {
+        if (mAutoRefreshScheduler.isIdle()) {
+            mAutoRefreshScheduler.remove();
+        } else {
+            mAutoRefreshScheduler.updateActive();
+        }
+    }
+
+    private void updateAutoRefresh() {
+        if (mAutoRefreshScheduler != null) {
+            mAutoRefreshScheduler.updateActive();
+        }
+    }
+
+    /**
+     * 自动刷新，与下拉刷新一样通知刷新回调
+     */
+    void startAutoRefresh() {
+        if (mRefreshing) {
+            return;
+        }
+        ensureHeader();
+        mRefreshing = true;
+        mNotify = true;
+        mNotifyAsync = true;
+        animateOffsetTo(getRefreshingHeight(), 0, mRefreshListener);
+    }
+
+    /**
+     * Keep the target in place while pulling, like SwipeRefreshLayout. Only the
+     * header moves, it is drawn over the target and clipped to the content
+     * area, so the target is never offset or invalidated during a pull.
+     */
     public void setIsPinContent(boolean mIsPinContent) {
+        if (this.mIsPinContent == mIsPinContent) {
+            return;
+        }
         this.mIsPinContent = mIsPinContent;
+        if (mTarget != null && mCurrentTargetOffsetTop != 0) {
+            // 拖拽过程中切换模式，内容回到新模式下的位置
+            cancelSettle();
+            ViewCompat.offsetTopAndBottom(mTarget, mIsPinContent ? -mCurrentTargetOffsetTop : mCurrentTargetOffsetTop);
+            requestLayout();
+        }
+    }
+
+    /**
+     * Keep the target at its full height while it is pulled down instead of
+     * shrinking it by the current offset, so layout passes during a pull do not
+     * make the target lay out its children again.
+     */
+    public void setKeepTargetFullHeight(boolean mKeepTargetFullHeight) {
+        if (this.mKeepTargetFullHeight != mKeepTargetFullHeight) {
+            this.mKeepTargetFullHeight = mKeepTargetFullHeight;
+            requestLayout();
+        }
     }
 
     public void setRefreshSuccessShowDuration(int mRefreshSuccessShowDuration) {
@@ -306,21 +790,213 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     }
 
     public void setTotalDragDistance(int mTotalDragDistance) {
-        this.mTotalDragDistance = mTotalDragDistance;
+        mEngine.setTotalDragDistance(mTotalDragDistance);
     }
 
     public void setTriggerRefreshDistance(int mTriggerRefreshDistance) {
-        this.mTriggerRefreshDistance = mTriggerRefreshDistance;
+        mEngine.setTriggerRefreshDistance(mTriggerRefreshDistance);
     }
 
     public void setRefreshingHeight(int mRefreshingHeight) {
         this.mRefreshingHeight = mRefreshingHeight;
+        if (mFixedHeaderHeight) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * Measure the header once at exactly the refreshing height instead of
+     * against the height of this layout, it is only measured again when the
+     * width changes or the header itself requests a layout.
+     * Has no effect while the refreshing height is not set.
+     */
+    public void setFixedHeaderHeight(boolean mFixedHeaderHeight) {
+        if (this.mFixedHeaderHeight != mFixedHeaderHeight) {
+            this.mFixedHeaderHeight = mFixedHeaderHeight;
+            requestLayout();
+        }
     }
 
     public void setHeaderOffset(int mHeaderOffset) {
         this.mHeaderOffset = mHeaderOffset;
     }
 
+    /**
+     * Set the listener to be notified with the frame timing of every drag,
+     * fling and offset animation. Recording is disabled while no listener is set.
+     */
+    public void setOnPullMetricsListener(@Nullable OnPullMetricsListener listener) {
+        if (listener == null) {
+            if (mMetricsRecorder != null) {
+                mMetricsRecorder.setListener(null);
+                mMetricsRecorder.end();
+                mMetricsRecorder = null;
+            }
+            return;
+        }
+        if (mMetricsRecorder == null) {
+            mMetricsRecorder = new PullMetricsRecorder(this);
+            mMetricsRecorder.setTraceEnabled(mMetricsTraceEnabled);
+        }
+        mMetricsRecorder.setListener(listener);
+    }
+
+    /**
+     * Record the touch events and nested scroll callbacks reaching this layout
+     * into the given recorder, pass {@code null} to stop recording.
+     */
+    public void setGestureTraceRecorder(@Nullable GestureTraceRecorder recorder) {
+        mTraceRecorder = recorder;
+    }
+
+    /**
+     * Deliver offset and state changes to the header once per frame instead of
+     * on every change. State changes are still delivered one by one and in
+     * order, followed by the last offset of the frame.
+     */
+    public void setCoalesceHeaderCallbacks(boolean coalesce) {
+        if (coalesce == (mHeaderCallbackDispatcher != null)) {
+            return;
+        }
+        if (coalesce) {
+            mHeaderCallbackDispatcher = new HeaderCallbackDispatcher(this);
+        } else {
+            final HeaderCallbackDispatcher dispatcher = mHeaderCallbackDispatcher;
+            mHeaderCallbackDispatcher = null;
+            dispatcher.flush();
+        }
+    }
+
+    /**
+     * Wrap the recorded sections in systrace sections, only used while an
+     * {@link OnPullMetricsListener} is set. The setting is kept when the
+     * listener is set or cleared later.
+     */
+    public void setMetricsTraceEnabled(boolean enabled) {
+        mMetricsTraceEnabled = enabled;
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.setTraceEnabled(enabled);
+        }
+    }
+
+    /**
+     * Run release and snap-back animations as translationY animations on the
+     * RenderThread, so a busy main thread can not stall them. The header only
+     * receives offset and state callbacks once the animation has finished.
+     * Only used on hardware accelerated windows from Lollipop on, and only
+     * with a header View: an {@link IPullRefreshDrawable} header is drawn by
+     * the layout on the main thread and keeps the regular animation.
+     */
+    public void setRenderThreadSettle(boolean mRenderThreadSettle) {
+        this.mRenderThreadSettle = mRenderThreadSettle;
+    }
+
+    /**
+     * Render the header and the target into hardware layers while they are
+     * dragged or animated, so moving them only recomposites the layers. They
+     * return to their own layer type once the movement ends. Only used on
+     * hardware accelerated windows.
+     */
+    public void setHardwareLayers(boolean mHardwareLayers) {
+        this.mHardwareLayers = mHardwareLayers;
+        if (!mHardwareLayers) {
+            restoreLayers();
+        }
+    }
+
+    private void promoteLayers() {
+        if (!mHardwareLayers || mLayerHeader != null || mLayerTarget != null || !isHardwareAccelerated()) {
+            return;
+        }
+        if (mHeaderView != null) {
+            mLayerHeader = mHeaderView;
+            mHeaderLayerType = mHeaderView.getLayerType();
+            mHeaderView.setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+        if (mTarget != null && !mIsPinContent) {
+            // 固定内容模式下内容不动，不需要硬件层
+            mLayerTarget = mTarget;
+            mTargetLayerType = mTarget.getLayerType();
+            mTarget.setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void restoreLayers() {
+        if (mLayerHeader != null) {
+            mLayerHeader.setLayerType(mHeaderLayerType, null);
+            mLayerHeader = null;
+        }
+        if (mLayerTarget != null) {
+            mLayerTarget.setLayerType(mTargetLayerType, null);
+            mLayerTarget = null;
+        }
+    }
+
+    /**
+     * 拖拽、嵌套滑动或 offset 动画结束时调用
+     */
+    private void onMovementEnd() {
+        if (!mIsBeingDragged && !mNestedScrollInProgress && !mOffsetAnimator.isRunning()) {
+            restoreLayers();
+        }
+        resumeIdleWork();
+    }
+
+    /**
+     * header 开始处理下拉时关闭内容的 overscroll 效果，避免 EdgeEffect 绘制在 header 之上
+     */
+    private void updateTargetOverScroll(boolean pulled) {
+        if (mTarget == null) {
+            return;
+        }
+        if (pulled && mTargetOverScrollMode < 0) {
+            mTargetOverScrollMode = mTarget.getOverScrollMode();
+            mTarget.setOverScrollMode(OVER_SCROLL_NEVER);
+        } else if (!pulled && mTargetOverScrollMode >= 0) {
+            mTarget.setOverScrollMode(mTargetOverScrollMode);
+            mTargetOverScrollMode = -1;
+        }
+    }
+
+    /**
+     * Settle with a spring that starts with the release velocity instead of a
+     * fixed duration animation. Takes precedence over the RenderThread settle.
+     */
+    public void setSpringSettle(boolean mSpringSettle) {
+        this.mSpringSettle = mSpringSettle;
+    }
+
+    /**
+     * @param stiffness    Stiffness of the settle spring, must be positive.
+     * @param dampingRatio Damping ratio of the settle spring, 1 settles without
+     *                     bouncing, lower values overshoot.
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("Spring stiffness constant must be positive.");
+        }
+        if (dampingRatio < 0) {
+            throw new IllegalArgumentException("Damping ratio must be non-negative");
+        }
+        this.mSpringStiffness = stiffness;
+        this.mSpringDampingRatio = dampingRatio;
+    }
+
+    private Runnable settleEndAction = new Runnable() {
+        @Override
+        public void run() {
+            if (!mSettling) {
+                return;
+            }
+            commitSettle(mSettleOffset);
+            endMetrics(PullRefreshMetrics.Phase.ANIMATION);
+            if (mSettleListener != null) {
+                mSettleListener.onAnimationEnd();
+            }
+            onMovementEnd();
+        }
+    };
+
     private Runnable showAction = new Runnable() {
         @Override
         public void run() {
@@ -328,6 +1004,380 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         }
     };
 
+    /**
+     * Set the listener that performs the refresh asynchronously. It is started
+     * once per refresh, whether triggered by the gesture or by
+     * {@link #setRefreshing(boolean, boolean)}, and its work is canceled when the
+     * layout is detached, disabled or the refresh times out. A refresh that
+     * reached REFRESHING before a listener was set starts it once it is set.
+     */
+    public void setAsyncRefreshListener(@Nullable AsyncRefreshListener listener) {
+        mAsyncRefreshListener = listener;
+        if (listener != null && mNotifyAsync && mRefreshing && mState == State.REFRESHING) {
+            // 恢复状态时还没有设置 listener，推迟到现在开始
+            mNotifyAsync = false;
+            startAsyncRefresh();
+        }
+    }
+
+    /**
+     * @param mRefreshTimeout Time in ms after which an async refresh is canceled and
+     *                        reported as REFRESH_FAILURE, 0 disables the timeout.
+     */
+    public void setRefreshTimeout(int mRefreshTimeout) {
+        this.mRefreshTimeout = mRefreshTimeout;
+    }
+
+    /**
+     * Pulls within this time after the last successful refresh go straight to
+     * REFRESH_SUCCESS, or to the {@link OnRevalidateListener} when one is set,
+     * without notifying the refresh listeners.
+     *
+     * @param mRefreshFreshnessTtl Time in ms, 0 disables the freshness check.
+     */
+    public void setRefreshFreshnessTtl(long mRefreshFreshnessTtl) {
+        this.mRefreshFreshnessTtl = mRefreshFreshnessTtl;
+    }
+
+    /**
+     * Set the listener to be notified instead of the refresh listeners when a
+     * pull happens while the content is still fresh. It must call
+     * {@link #setRefreshComplete(boolean)} like a regular refresh.
+     */
+    public void setOnRevalidateListener(@Nullable OnRevalidateListener listener) {
+        mRevalidateListener = listener;
+    }
+
+    /**
+     * @return {@link SystemClock#elapsedRealtime()} of the last successful
+     * refresh, 0 if there was none.
+     */
+    public long getLastRefreshSuccessTime() {
+        return mLastRefreshSuccessTime;
+    }
+
+    boolean isRefreshFresh() {
+        return mRefreshFreshnessTtl > 0 && mLastRefreshSuccessTime > 0
+                && SystemClock.elapsedRealtime() - mLastRefreshSuccessTime < mRefreshFreshnessTtl;
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState ss = new SavedState(super.onSaveInstanceState());
+        ss.lastRefreshSuccessTime = mLastRefreshSuccessTime;
+        ss.refreshing = mRefreshing;
+        // 只保存还没有发出的通知，恢复后每个刷新的请求最多发出一次
+        ss.notifyPending = mNotify;
+        ss.notifyAsyncPending = mNotifyAsync;
+        return ss;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState ss = (SavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+        mLastRefreshSuccessTime = ss.lastRefreshSuccessTime;
+        if (ss.refreshing && !mRefreshing) {
+            // 恢复刷新中的状态，已经发出的请求由调用方结束，不再重复通知
+            ensureHeader();
+            mRefreshing = true;
+            // 松手回弹还没结束时还没有通知过，恢复后补发一次
+            mNotify = ss.notifyPending;
+            mNotifyAsync = ss.notifyAsyncPending;
+            mRestoreRefreshing = true;
+            if (ViewCompat.isLaidOut(this)) {
+                restoreRefreshingOffset();
+            } else {
+                requestLayout();
+            }
+        }
+    }
+
+    /**
+     * 直接移动到刷新高度并进入 REFRESHING，不播放动画
+     */
+    private void restoreRefreshingOffset() {
+        mRestoreRefreshing = false;
+        if (!mRefreshing || isOffsetAnimating() || mSettling) {
+            // 恢复之后已经重新设置了刷新状态
+            return;
+        }
+        applyTargetOffset(getRefreshingHeight());
+        mRefreshListener.onAnimationEnd();
+    }
+
+    private void startAsyncRefresh() {
+        if (mAsyncRefreshListener == null || mActiveRefresh != null) {
+            // 已经有刷新在执行，合并重复触发
+            return;
+        }
+        mRefreshSignal = new CancellationSignal();
+        final RefreshHandle handle = mAsyncRefreshListener.onRefresh(mRefreshSignal);
+        if (handle == null) {
+            throw new IllegalStateException("AsyncRefreshListener#onRefresh must return a RefreshHandle");
+        }
+        if (!mRefreshing || mRefreshSignal == null) {
+            // 回调中已经结束或取消了刷新
+            return;
+        }
+        mActiveRefresh = handle;
+        handle.attach(this);
+        if (mRefreshTimeout > 0) {
+            postDelayed(refreshTimeoutAction, mRefreshTimeout);
+        }
+    }
+
+    void onRefreshHandleComplete(RefreshHandle handle, boolean success) {
+        if (handle == mActiveRefresh) {
+            setRefreshComplete(success);
+        }
+    }
+
+    private Runnable refreshTimeoutAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mActiveRefresh != null) {
+                final CancellationSignal signal = mRefreshSignal;
+                setRefreshComplete(false);
+                if (signal != null) {
+                    signal.cancel();
+                }
+            }
+        }
+    };
+
+    /**
+     * 结束异步刷新，不取消正在执行的任务
+     */
+    private void clearAsyncRefresh() {
+        removeCallbacks(refreshTimeoutAction);
+        if (mActiveRefresh != null) {
+            mActiveRefresh.detach();
+            mActiveRefresh = null;
+        }
+        mRefreshSignal = null;
+    }
+
+    /**
+     * detach 或 disable 时调用，reset 会结束松手或 setRefreshing 的动画，
+     * 动画结束的回调不能再开始没有人取消的刷新
+     */
+    private void abortPendingRefresh() {
+        if (mNotify || (mNotifyAsync && mAsyncRefreshListener != null)) {
+            // 刷新回调还没有通知过，刷新还没有开始
+            mRefreshing = false;
+        }
+        mNotify = false;
+        mNotifyAsync = false;
+    }
+
+    /**
+     * 取消正在执行的异步刷新
+     */
+    private void cancelAsyncRefresh() {
+        final CancellationSignal signal = mRefreshSignal;
+        final boolean active = mActiveRefresh != null;
+        clearAsyncRefresh();
+        if (active) {
+            // 刷新任务已经取消，不会再调用 setRefreshComplete
+            mRefreshing = false;
+            mNotifyAsync = false;
+        }
+        if (signal != null) {
+            signal.cancel();
+        }
+    }
+
+    /**
+     * Set the listener to be notified as soon as a pull is predicted to trigger a
+     * refresh, before the finger is released. Setting a listener enables the
+     * prediction, {@link OnRefreshListener#onRefresh()} is still called once the
+     * release animation has finished.
+     */
+    public void setOnPrepareRefreshListener(@Nullable OnPrepareRefreshListener listener) {
+        mPrepareRefreshListener = listener;
+        if (listener == null) {
+            cancelPrepareRefresh();
+        }
+    }
+
+    /**
+     * 拖拽过程中根据 offset 和速度预测松手时是否会触发刷新，是的话提前通知调用方开始刷新
+     */
+    private void updateSpeculativeRefresh(long eventTime) {
+        if (mPrepareRefreshListener == null || mRefreshing || isRefreshFresh()) {
+            // 数据还新鲜时松手也不会真正刷新，不需要提前请求
+            return;
+        }
+        // 用事件本身的时间，帧对齐的动画时钟在一帧内收到多个事件时间隔为 0
+        final long dt = eventTime - mLastDragTime;
+        if (mLastDragTime == 0 || dt > SPECULATIVE_LOOKAHEAD_MS) {
+            mDragVelocity = 0;
+        } else if (dt > 0) {
+            final float velocity = (mTargetOffset - mLastDragOffset) * 1000f / dt;
+            mDragVelocity = mDragVelocity * .4f + velocity * .6f;
+        }
+        mLastDragTime = eventTime;
+        mLastDragOffset = mTargetOffset;
+        if (mPrepareSignal != null) {
+            return;
+        }
+        final float predicted = mTargetOffset + mDragVelocity * SPECULATIVE_LOOKAHEAD_MS / 1000f;
+        if (mEngine.shouldRefreshOnRelease(mTargetOffset) && mEngine.shouldRefreshOnRelease(predicted)) {
+            mPrepareSignal = new CancellationSignal();
+            mPrepareRefreshListener.onPrepareRefresh(mPrepareSignal);
+        }
+    }
+
+    /**
+     * 触摸驱动的嵌套滑动与触摸事件同时分发，使用触摸事件的时间
+     */
+    private long getNestedEventTime(int type) {
+        return type == ViewCompat.TYPE_TOUCH ? mLastTouchEventTime : SystemClock.uptimeMillis();
+    }
+
+    private void cancelPrepareRefresh() {
+        if (mPrepareSignal != null) {
+            final CancellationSignal signal = mPrepareSignal;
+            mPrepareSignal = null;
+            signal.cancel();
+        }
+    }
+
+    /**
+     * Set the listener to be notified when the content is scrolled close to its
+     * end and the next page should be loaded.
+     */
+    public void setOnLoadMoreListener(@Nullable OnLoadMoreListener listener) {
+        mLoadMoreListener = listener;
+    }
+
+    public void setLoadMoreEnabled(boolean mLoadMoreEnabled) {
+        this.mLoadMoreEnabled = mLoadMoreEnabled;
+        if (!mLoadMoreEnabled) {
+            removeCallbacks(loadResetAction);
+            changeLoadState(State.NONE);
+        }
+    }
+
+    /**
+     * @param mLoadMorePrefetchItems Load more once the last visible item is within this
+     *                               many items of the end of a RecyclerView or AbsListView.
+     */
+    public void setLoadMorePrefetchItems(int mLoadMorePrefetchItems) {
+        this.mLoadMorePrefetchItems = mLoadMorePrefetchItems;
+    }
+
+    /**
+     * @param mLoadMorePrefetchDistance Load more once the content is scrolled within this
+     *                                  many pixels of its end.
+     */
+    public void setLoadMorePrefetchDistance(int mLoadMorePrefetchDistance) {
+        this.mLoadMorePrefetchDistance = mLoadMorePrefetchDistance;
+    }
+
+    /**
+     * Notify the widget that loading more data has finished.
+     */
+    public void setLoadMoreComplete(boolean success) {
+        if (mLoadState == State.LOADING) {
+            changeLoadState(success ? State.LOAD_SUCCESS : State.LOAD_FAILURE);
+            removeCallbacks(loadResetAction);
+            postDelayed(loadResetAction, success ? mRefreshSuccessShowDuration : mRefreshFailureShowDuration);
+        }
+    }
+
+    /**
+     * @return Whether more data is being loaded.
+     */
+    public boolean isLoadingMore() {
+        return mLoadState == State.LOADING;
+    }
+
+    private Runnable loadResetAction = new Runnable() {
+        @Override
+        public void run() {
+            changeLoadState(State.NONE);
+        }
+    };
+
+    private void checkLoadMore(boolean reachedEnd) {
+        if (mLoadState == State.LOADING) {
+            if (reachedEnd && mFooterView != null) {
+                // 已经滑到底部，显示加载中的 footer
+                mFooterView.setVisibility(VISIBLE);
+            }
+            return;
+        }
+        if (!mLoadMoreEnabled || mRefreshing || mLoadState != State.NONE
+                || mLoadMoreListener == null || !isEnabled()) {
+            return;
+        }
+        if (reachedEnd || isTargetNearEnd()) {
+            changeLoadState(State.LOADING);
+            if (mFooterView != null) {
+                mFooterView.setVisibility(reachedEnd ? VISIBLE : INVISIBLE);
+            }
+            mLoadMoreListener.onLoadMore();
+        }
+    }
+
+    /**
+     * 内容不支持嵌套滑动时收不到 onNestedScroll，例如 AbsListView，在触摸移动和滚动变化时检查；
+     * 只在内容已经离开顶部后检查，下拉和其他 view 的滚动不会触发
+     */
+    private void checkLoadMoreWithoutNestedScroll() {
+        if (mLoadMoreEnabled && mLoadMoreListener != null && mTarget != null
+                && !ViewCompat.isNestedScrollingEnabled(mTarget) && mTarget.canScrollVertically(-1)) {
+            checkLoadMore(!mTarget.canScrollVertically(1));
+        }
+    }
+
+    private boolean isTargetNearEnd() {
+        if (mTarget instanceof RecyclerView) {
+            final RecyclerView recyclerView = (RecyclerView) mTarget;
+            final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            if (layoutManager instanceof LinearLayoutManager) {
+                final int last = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+                if (last != RecyclerView.NO_POSITION
+                        && last >= layoutManager.getItemCount() - 1 - mLoadMorePrefetchItems) {
+                    return true;
+                }
+            }
+        } else if (mTarget instanceof AbsListView) {
+            final AbsListView listView = (AbsListView) mTarget;
+            final int last = listView.getLastVisiblePosition();
+            if (last != AbsListView.INVALID_POSITION
+                    && last >= listView.getCount() - 1 - mLoadMorePrefetchItems) {
+                return true;
+            }
+        }
+        if (mTarget instanceof ScrollingView) {
+            final ScrollingView scrollingView = (ScrollingView) mTarget;
+            final int remaining = scrollingView.computeVerticalScrollRange()
+                    - scrollingView.computeVerticalScrollOffset()
+                    - scrollingView.computeVerticalScrollExtent();
+            return remaining <= mLoadMorePrefetchDistance;
+        }
+        return !mTarget.canScrollVertically(1);
+    }
+
+    private void changeLoadState(State state) {
+        if (state != mLoadState) {
+            mLoadState = state;
+            if (mFooterView != null) {
+                if (state == State.NONE) {
+                    mFooterView.setVisibility(INVISIBLE);
+                }
+                ((IPullRefreshFooter) mFooterView).onStateChanged(PullRefreshLayout.this, mLoadState);
+            }
+        }
+    }
+
     /**
      * @return Whether the SwipeRefreshWidget is actively showing refresh
      * progress.
@@ -336,13 +1386,23 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         return mRefreshing;
     }
 
+    @Nullable
+    View getTargetView() {
+        ensureTarget();
+        return mTarget;
+    }
+
+    int getCurrentOffset() {
+        return mCurrentTargetOffsetTop;
+    }
+
     private void ensureTarget() {
         // Don't bother getting the parent height if the parent hasn't been laid
         // out yet.
         if (mTarget == null) {
             for (int i = 0; i < getChildCount(); i++) {
                 View child = getChildAt(i);
-                if (!child.equals(mHeaderView)) {
+                if (!child.equals(mHeaderView) && !child.equals(mFooterView)) {
                     mTarget = child;
                     break;
                 }
@@ -367,11 +1427,29 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         final int childLeft = getPaddingLeft();
         final int childTop = getPaddingTop() + (mIsPinContent ? 0 : mCurrentTargetOffsetTop);
         final int childWidth = width - getPaddingLeft() - getPaddingRight();
-        final int childHeight = height - getPaddingTop() - getPaddingBottom() - (mIsPinContent ? 0 : mCurrentTargetOffsetTop);
+        final int childHeight = height - getPaddingTop() - getPaddingBottom() - (mIsPinContent || mKeepTargetFullHeight ? 0 : mCurrentTargetOffsetTop);
 
         child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
 
+        layoutHeader();
+
+        if (mFooterView != null) {
+            // footer 固定在底部，覆盖在内容之上，只在加载更多时显示
+            int footerBottom = height - getPaddingBottom();
+            mFooterView.layout(childLeft,
+                    footerBottom - mFooterView.getMeasuredHeight(),
+                    childLeft + mFooterView.getMeasuredWidth(),
+                    footerBottom);
+        }
+
+        if (mRestoreRefreshing) {
+            restoreRefreshingOffset();
+        }
+    }
+
+    private void layoutHeader() {
         if (mHeaderView != null) {
+            int childLeft = getPaddingLeft();
             int headerWidth = mHeaderView.getMeasuredWidth();
             int headerHeight = mHeaderView.getMeasuredHeight();
             int headerTop = getPaddingTop() + mCurrentTargetOffsetTop - mHeaderView.getMeasuredHeight();
@@ -382,9 +1460,89 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         }
     }
 
+    private void measureHeader(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mHeaderView != null) {
+            final LayoutParams lp = mHeaderView.getLayoutParams();
+
+            final int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec, 0, lp.width);
+            final int childHeightMeasureSpec = mFixedHeaderHeight && mRefreshingHeight > 0
+                    ? MeasureSpec.makeMeasureSpec(mRefreshingHeight, MeasureSpec.EXACTLY)
+                    : getChildMeasureSpec(heightMeasureSpec, 0, lp.height);
+            // spec 不变且 header 没有请求布局时 View.measure 会直接跳过
+            mHeaderView.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mHeaderView == null && mHeaderDrawable != null && !isLazyHeader() && mCurrentTargetOffsetTop > 0) {
+            drawHeaderDrawable(canvas);
+        }
+    }
+
+    private void drawHeaderDrawable(Canvas canvas) {
+        final int left = getPaddingLeft();
+        final int right = getWidth() - getPaddingRight();
+        final int top = getPaddingTop();
+        final int height = mHeaderDrawable.getIntrinsicHeight();
+        final int save = canvas.save();
+        // 只绘制内容上方露出的区域
+        canvas.clipRect(left, top, right, top + mCurrentTargetOffsetTop);
+        canvas.translate(left, top + mCurrentTargetOffsetTop - height + mHeaderOffset);
+        final boolean animating = mHeaderDrawable.draw(canvas, right - left, height);
+        canvas.restoreToCount(save);
+        if (animating) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if (child != mHeaderView) {
+            return super.drawChild(canvas, child, drawingTime);
+        }
+        final int left = getPaddingLeft();
+        final int top = getPaddingTop();
+        final int right = getWidth() - getPaddingRight();
+        final int bottom;
+        if (mSettling) {
+            // RenderThread 回弹时 offset 不会更新，裁剪到回弹过程中露出的最大区域
+            bottom = top + Math.max(mCurrentTargetOffsetTop, mCurrentTargetOffsetTop + mSettleOffset);
+        } else {
+            bottom = top + mCurrentTargetOffsetTop;
+        }
+        final int clipBottom = Math.min(bottom + Math.max(mHeaderOffset, 0), getHeight() - getPaddingBottom());
+        if (clipBottom <= top) {
+            // header 没有露出，不绘制
+            return false;
+        }
+        // 只绘制露出的区域，固定内容模式下 header 覆盖在内容之上也只占这一条区域
+        final int save = canvas.save();
+        canvas.clipRect(left, top, right, clipBottom);
+        final boolean more = super.drawChild(canvas, child, drawingTime);
+        canvas.restoreToCount(save);
+        return more;
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        // 内容始终最先绘制，header/footer 绘制在内容之上，避免拖动时调用 bringToFront 触发重新布局
+        final int targetIndex = mTarget != null ? indexOfChild(mTarget) : -1;
+        if (targetIndex < 0) {
+            return i;
+        }
+        if (i == 0) {
+            return targetIndex;
+        }
+        return i <= targetIndex ? i - 1 : i;
+    }
+
     @Override
     public void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
         if (mTarget == null) {
             ensureTarget();
         }
@@ -395,13 +1553,11 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
                 getMeasuredWidth() - getPaddingLeft() - getPaddingRight(),
                 MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(
                 getMeasuredHeight() - getPaddingTop() - getPaddingBottom(), MeasureSpec.EXACTLY));
-        if (mHeaderView != null) {
-            final LayoutParams lp = mHeaderView.getLayoutParams();
-
-            final int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec, 0, lp.width);
-            final int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec,
-                    0, lp.height);
-            mHeaderView.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+        measureHeader(widthMeasureSpec, heightMeasureSpec);
+        if (mFooterView != null) {
+            final LayoutParams lp = mFooterView.getLayoutParams();
+            mFooterView.measure(getChildMeasureSpec(widthMeasureSpec, 0, lp.width),
+                    getChildMeasureSpec(heightMeasureSpec, 0, lp.height));
         }
     }
 
@@ -411,14 +1567,118 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
      * return false  代表不能下拉了
      * return true 还可以向下滑
      */
-    public boolean canChildScrollUp() {
-        if (mChildScrollUpCallback != null) {
-            return mChildScrollUpCallback.canChildScrollUp(this, mTarget);
+    public boolean canChildScrollUp() {
+        if (mChildScrollUpCallback != null) {
+            return mChildScrollUpCallback.canChildScrollUp(this, mTarget);
+        }
+        if (!mCanChildScrollUpValid) {
+            if (mScrollabilityProbe == null) {
+                mScrollabilityProbe = ScrollabilityProbes.forTarget(mTarget);
+            }
+            mCanChildScrollUp = mScrollabilityProbe.canScrollUp(mTarget);
+            mCanChildScrollUpValid = true;
+        }
+        return mCanChildScrollUp;
+    }
+
+    /**
+     * Set the probe used by {@link #canChildScrollUp()} when no
+     * {@link OnChildScrollUpCallback} is set. By default a probe specialized for
+     * RecyclerView, AbsListView, ScrollView/NestedScrollView or WebView targets is
+     * used. Its result is cached until the target scrolls or a new touch stream starts.
+     *
+     * @param probe Probe to use, null to go back to the built-in probes.
+     */
+    public void setScrollabilityProbe(@Nullable ScrollabilityProbe probe) {
+        mScrollabilityProbe = probe;
+        invalidateScrollability();
+    }
+
+    private void invalidateScrollability() {
+        mCanChildScrollUpValid = false;
+    }
+
+    private final ViewTreeObserver.OnScrollChangedListener mOnScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            invalidateScrollability();
+            // 松手后的 fling 不经过触摸事件
+            checkLoadMoreWithoutNestedScroll();
+        }
+    };
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 可能换到了刷新率不同的屏幕
+        mFrameIntervalNanos = -1;
+        getViewTreeObserver().addOnScrollChangedListener(mOnScrollChangedListener);
+        invalidateScrollability();
+        if (mAutoRefreshScheduler != null) {
+            mAutoRefreshScheduler.setAttached(true);
+        }
+        if (mIdleWorkQueue != null) {
+            mIdleWorkQueue.onAttachedToWindow();
+        }
+        if (mMetricsRecorder != null) {
+            mMetricsRecorder.onAttachedToWindow();
+        }
+    }
+
+    /**
+     * Run {@code work} on the main thread once this layout is idle: attached, not
+     * touched, not dragged, not in a nested scroll and not animating its offset.
+     * Pending work is paused as soon as a new gesture starts. Each frame runs
+     * queued work until half of the display frame interval is used, at least
+     * one item per frame.
+     */
+    public void postIdleWork(@NonNull Runnable work) {
+        if (mIdleWorkQueue == null) {
+            mIdleWorkQueue = new IdleWorkQueue(this);
+        }
+        mIdleWorkQueue.post(work);
+    }
+
+    /**
+     * Remove every pending instance of {@code work} posted with {@link #postIdleWork(Runnable)}.
+     */
+    public void removeIdleWork(@NonNull Runnable work) {
+        if (mIdleWorkQueue != null) {
+            mIdleWorkQueue.remove(work);
+        }
+    }
+
+    /**
+     * @return Whether the layout is attached and neither touched, dragged, in a
+     * nested scroll nor animating its offset.
+     */
+    public boolean isIdle() {
+        return ViewCompat.isAttachedToWindow(this) && !mGestureInProgress && !mIsBeingDragged
+                && !mNestedScrollInProgress && !mIsOverAnimating && !mSettling && !mOffsetAnimator.isRunning();
+    }
+
+    private void resumeIdleWork() {
+        if (mIdleWorkQueue != null) {
+            mIdleWorkQueue.resume();
         }
-        if (mTarget instanceof ListView) {
-            return ListViewCompat.canScrollList((ListView) mTarget, -1);
+    }
+
+    private void pauseIdleWork() {
+        if (mIdleWorkQueue != null) {
+            mIdleWorkQueue.pause();
         }
-        return mTarget.canScrollVertically(-1);
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAutoRefresh();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAutoRefresh();
     }
 
     /**
@@ -431,12 +1691,39 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         mChildScrollUpCallback = callback;
     }
 
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordMotionEvent(ev);
+        }
+        mLastTouchEventTime = ev.getEventTime();
+        final int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            // 新的手势开始，暂停空闲任务
+            mGestureInProgress = true;
+            pauseIdleWork();
+        }
+        final boolean handled = super.dispatchTouchEvent(ev);
+        if (action == MotionEvent.ACTION_MOVE) {
+            checkLoadMoreWithoutNestedScroll();
+        }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mGestureInProgress = false;
+            onMovementEnd();
+        }
+        return handled;
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         ensureTarget();
 
         final int action = ev.getActionMasked();
         int pointerIndex;
+        if (action == MotionEvent.ACTION_DOWN) {
+            // 新的事件序列，重新判断内容能否下拉
+            invalidateScrollability();
+        }
 
         if (!isEnabled() || canChildScrollUp() || mIsOverAnimating
                 || mNestedScrollInProgress) {
@@ -452,7 +1739,7 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
                 mIsBeingDragged = false;
-                final int y = (int) ev.getY();
+                final float y = ev.getY();
                 if (!canChildScrollUp()) {
                     mLastMotionY = y;
                     mActivePointerId = ev.getPointerId(0);
@@ -471,8 +1758,8 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
                     break;
                 }
 
-                final int y = (int) ev.getY(pointerIndex);
-                final int yDiff = Math.abs(y - mLastMotionY);
+                final float y = ev.getY(pointerIndex);
+                final float yDiff = Math.abs(y - mLastMotionY);
                 if (yDiff > mTouchSlop) {
                     mIsBeingDragged = true;
                     mLastMotionY = y;
@@ -505,6 +1792,9 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
         final int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            invalidateScrollability();
+        }
 
         if (!isEnabled() || canChildScrollUp() || mIsOverAnimating
                 || mNestedScrollInProgress) {
@@ -514,8 +1804,7 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
-                final int x = (int) ev.getX();
-                final int y = (int) ev.getY();
+                final float y = ev.getY();
                 if (!canChildScrollUp()) {
                     mLastMotionY = y;
                     mActivePointerId = ev.getPointerId(0);
@@ -531,29 +1820,35 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
                     return false;
                 }
 
-                final int y = (int) ev.getY(activePointerIndex);
-                int dy = y - mLastMotionY;
+                final float y = ev.getY(activePointerIndex);
+                final float moved = y - mLastMotionY;
 
-                if (!mIsBeingDragged && Math.abs(dy) > mTouchSlop) {
+                if (!mIsBeingDragged && Math.abs(moved) > mTouchSlop) {
                     mIsBeingDragged = true;
-                    if (dy > 0) {
-                        dy += mTouchSlop;
+                    if (moved > 0) {
+                        mLastMotionY -= mTouchSlop;
                     } else {
-                        dy -= mTouchSlop;
+                        mLastMotionY += mTouchSlop;
                     }
                 }
 
                 if (mIsBeingDragged) {
-                    mLastMotionY = y;
-                    dy = calculateOffsetByDragRate(dy);
-                    if (mCurrentTargetOffsetTop + dy < 0) {
-                        dy = -mCurrentTargetOffsetTop;
+                    beginMetrics(PullRefreshMetrics.Phase.DRAG);
+                    // 把这次事件中批量的历史采样逐个计算阻尼，合并成一次偏移
+                    float offset = mTargetOffset;
+                    float lastY = mLastMotionY;
+                    final int historySize = ev.getHistorySize();
+                    for (int h = 0; h < historySize; h++) {
+                        final float historicalY = ev.getHistoricalY(activePointerIndex, h);
+                        offset = dragBy(offset, historicalY - lastY);
+                        lastY = historicalY;
                     }
-
-                    if (mCurrentTargetOffsetTop + dy > mTotalDragDistance) {
-                        dy = mTotalDragDistance - mCurrentTargetOffsetTop;
+                    offset = dragBy(offset, y - lastY);
+                    mLastMotionY = y;
+                    if (offset != mTargetOffset) {
+                        moveTargetTo(offset);
+                        updateSpeculativeRefresh(ev.getEventTime());
                     }
-                    moveTarget(dy);
                 }
                 break;
             }
@@ -565,6 +1860,7 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
                     return false;
                 }
                 mActivePointerId = ev.getPointerId(pointerIndex);
+                mLastMotionY = ev.getY(pointerIndex);
                 break;
             }
 
@@ -573,16 +1869,23 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
                 break;
 
             case MotionEvent.ACTION_UP: {
+                endMetrics(PullRefreshMetrics.Phase.DRAG);
                 if (mVelocityTracker != null) {
                     mVelocityTracker.addMovement(ev);
                     mVelocityTracker.computeCurrentVelocity(1000);
                     float yvel = mVelocityTracker.getYVelocity(mActivePointerId);
-                    if (mHeaderView != null) {
-                        fling(-mHeaderView.getHeight(), 0, yvel);
+                    if (mSpringSettle) {
+                        // 直接把松手速度交给弹簧，不再先 fling 再回弹
+                        if (mIsBeingDragged) {
+                            finishSpinner(mCurrentTargetOffsetTop, toOffsetVelocity(yvel));
+                        }
+                    } else if (getHeader() != null) {
+                        fling(-getHeaderHeight(), 0, yvel);
                     }
                 }
             }
             case MotionEvent.ACTION_CANCEL:
+                endMetrics(PullRefreshMetrics.Phase.DRAG);
                 mIsBeingDragged = false;
                 mActivePointerId = INVALID_POINTER;
                 if (mVelocityTracker != null) {
@@ -607,54 +1910,21 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     final boolean fling(int minOffset,
                         int maxOffset, float velocityY) {
-        if (mFlingRunnable != null) {
-            mHeaderView.removeCallbacks(mFlingRunnable);
-            mFlingRunnable = null;
-        }
-
-        if (mScroller == null) {
-            mScroller = new OverScroller(mHeaderView.getContext());
-        }
-
-        mScroller.fling(
-                0, 0, // curr
-                0, Math.round(velocityY), // velocity.
-                0, 0, // x
-                minOffset, maxOffset); // y
-
-        if (mScroller.computeScrollOffset()) {
-            mFlingRunnable = new FlingRunnable(mHeaderView);
-            ViewCompat.postOnAnimation(mHeaderView, mFlingRunnable);
+        cancelSettle();
+        mLastFlingValue = 0;
+        // 与 mOffsetAnimator 共用同一个帧回调，不再为每次 fling 创建 Runnable
+        if (mOffsetAnimator.fling(Math.round(velocityY), minOffset, maxOffset)) {
+            beginMetrics(PullRefreshMetrics.Phase.FLING);
             return true;
         } else {
-            onFlingFinished(mHeaderView);
+            onFlingFinished();
             return false;
         }
     }
 
-    private class FlingRunnable implements Runnable {
-        private final View mLayout;
-
-        FlingRunnable(View layout) {
-            mLayout = layout;
-        }
-
-        @Override
-        public void run() {
-            if (mLayout != null && mScroller != null) {
-                if (mScroller.computeScrollOffset()) {
-                    setTargetOffsetTopAndBottom(mScroller.getCurrY());
-                    // Post ourselves so that we run on the next animation
-                    ViewCompat.postOnAnimation(mLayout, this);
-                } else {
-                    onFlingFinished(mLayout);
-                }
-            }
-        }
-    }
-
-    private void onFlingFinished(View mLayout) {
-        finishSpinner(mCurrentTargetOffsetTop);
+    private void onFlingFinished() {
+        endMetrics(PullRefreshMetrics.Phase.FLING);
+        finishSpinner(mCurrentTargetOffsetTop, 0);
     }
 
     @Override
@@ -679,6 +1949,9 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     @Override
     public boolean onStartNestedScroll(@NonNull View child, @NonNull View target, int nestedScrollAxes, int type) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordStartNestedScroll(nestedScrollAxes, type);
+        }
         boolean start = isEnabled() && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
         if (start) {
             cancelAnimator();
@@ -693,11 +1966,15 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     @Override
     public void onNestedScrollAccepted(@NonNull View child, @NonNull View target, int axes, int type) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordNestedScrollAccepted(axes, type);
+        }
         // Reset the counter of how much leftover scroll needs to be consumed.
         mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
         // Dispatch up to the nested parent
         startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL, type);
         mNestedScrollInProgress = true;
+        pauseIdleWork();
     }
 
     @Override
@@ -707,21 +1984,28 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     @Override
     public void onNestedPreScroll(@NonNull View target, int dx, int dy, @Nullable int[] consumed, int type) {
-        if (dy > 0 && mCurrentTargetOffsetTop > 0) {
-            int offset = 0;
-            if (dy > mCurrentTargetOffsetTop) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordNestedPreScroll(dx, dy, type);
+        }
+        invalidateScrollability();
+        if (dy > 0 && mTargetOffset > 0) {
+            // 基于未取整的偏移计算，不丢掉拖拽累计的小数部分
+            final float offset;
+            if (dy >= mTargetOffset) {
                 // 上滑并且滑动距离大于头部露出距离
                 if (consumed != null) {
-                    consumed[1] = dy - (int) mCurrentTargetOffsetTop;
+                    consumed[1] = dy - mCurrentTargetOffsetTop;
                 }
-                offset = -mCurrentTargetOffsetTop;
+                offset = 0;
             } else {
-                offset -= dy;
+                offset = mTargetOffset - dy;
                 if (consumed != null) {
                     consumed[1] = dy;
                 }
             }
-            moveTarget(offset);
+            beginMetrics(PullRefreshMetrics.Phase.DRAG);
+            moveTargetTo(offset);
+            updateSpeculativeRefresh(getNestedEventTime(type));
         }
         // Now let our nested parent consume the leftovers
         final int[] parentConsumed = mParentScrollConsumed;
@@ -744,15 +2028,21 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     @Override
     public void onStopNestedScroll(@NonNull View target, int type) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordStopNestedScroll(type);
+        }
         mNestedScrollingParentHelper.onStopNestedScroll(target, type);
         mNestedScrollInProgress = false;
+        endMetrics(PullRefreshMetrics.Phase.DRAG);
         // Finish the spinner for nested scrolling if we ever consumed any
         // unconsumed nested scroll
         if (mCurrentTargetOffsetTop > 0) {
-            finishSpinner(mCurrentTargetOffsetTop);
+            finishSpinner(mCurrentTargetOffsetTop, toOffsetVelocity(mNestedPreFlingVelocity));
         }
+        mNestedPreFlingVelocity = 0;
         // Dispatch up our nested parent
         stopNestedScroll(type);
+        onMovementEnd();
     }
 
     @Override
@@ -763,6 +2053,10 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
 
     @Override
     public void onNestedScroll(@NonNull View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, type);
+        }
+        invalidateScrollability();
         // Dispatch up to the nested parent first
         dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed,
                 mParentOffsetInWindow, type);
@@ -773,33 +2067,74 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         // 'offset in window 'functionality to see if we have been moved from the event.
         // This is a decent indication of whether we should take over the event stream or not.
         int dy = dyUnconsumed + mParentOffsetInWindow[1];
+        if (dyConsumed > 0 || dyUnconsumed > 0) {
+            // 向上滑动内容，检查是否接近底部需要预加载
+            checkLoadMore(dyUnconsumed > 0);
+        }
         if (type == ViewCompat.TYPE_TOUCH) {
             // 处理下拉过程
-            if (dy < 0 && !canChildScrollUp() && mCurrentTargetOffsetTop < mTotalDragDistance) { // 列表不能下拉了
-                int offset = calculateOffsetByDragRate(-dy);
-                if (mCurrentTargetOffsetTop + offset > mTotalDragDistance) {
-                    offset = mTotalDragDistance - mCurrentTargetOffsetTop;
-                }
-                moveTarget(offset);
+            if (dy < 0 && !canChildScrollUp() && mTargetOffset < mEngine.getTotalDragDistance()) { // 列表不能下拉了
+                final float offset = dragBy(mTargetOffset, -dy);
+                beginMetrics(PullRefreshMetrics.Phase.DRAG);
+                moveTargetTo(offset);
+                updateSpeculativeRefresh(mLastTouchEventTime);
             }
         }
     }
 
-    protected int calculateOffsetByDragRate(int dy) {
-
-        float downResistance;
+    /**
+     * Applies the drag resistance to a finger movement of {@code dy} pixels
+     * at the given offset, without rounding.
+     *
+     * @return The resulting change of the offset.
+     */
+    protected float calculateOffsetByDragRate(float dy, float currentOffset) {
+        if (mLegacyDragRate) {
+            // 子类还在重写废弃的 int 版本，继续使用它的阻尼
+            return calculateOffsetByDragRate(Math.round(dy));
+        }
+        return mEngine.applyDragResistance(dy, currentOffset);
+    }
 
-        if (dy < 0) {
-            downResistance = dragRate;
-            return (int) (dy * downResistance);
-        } else {
-            final float overscrollTop = mCurrentTargetOffsetTop;
-            float originalDragPercent = overscrollTop / mTotalDragDistance;
-            float dragPercent = Math.min(1f, Math.abs(originalDragPercent));
-            downResistance = 1 - dragPercent;
+    /**
+     * 手指移动 dy 后的偏移，限制在 0 到最大下拉距离之间。
+     * 子类重写了阻尼计算时使用子类的结果，否则直接交给 engine
+     */
+    private float dragBy(float offset, float dy) {
+        if (mCustomDragRate) {
+            return Math.max(0, Math.min(offset + calculateOffsetByDragRate(dy, offset), mEngine.getTotalDragDistance()));
         }
+        return mEngine.drag(offset, dy);
+    }
+
+    /**
+     * 手指速度经过阻尼后才是 offset 的速度
+     */
+    private float toOffsetVelocity(float velocity) {
+        return calculateOffsetByDragRate(velocity, mTargetOffset);
+    }
+
+    /**
+     * @deprecated The drag paths no longer round every step, override
+     * {@link #calculateOffsetByDragRate(float, float)} instead. While a
+     * subclass still overrides this method, the float overload delegates to it
+     * and every step is rounded as before.
+     */
+    @Deprecated
+    protected int calculateOffsetByDragRate(int dy) {
+        return Math.round(mEngine.applyDragResistance(dy, mTargetOffset));
+    }
 
-        return (int) Math.max(dy * downResistance, 1);
+    private static boolean overridesDragRate(Class<?> cls, Class<?>... parameterTypes) {
+        for (Class<?> c = cls; c != PullRefreshLayout.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("calculateOffsetByDragRate", parameterTypes);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+                // 继续检查父类
+            }
+        }
+        return false;
     }
 
     // NestedScrollingChild
@@ -875,6 +2210,11 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
     @Override
     public boolean onNestedPreFling(View target, float velocityX,
                                     float velocityY) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordNestedPreFling(velocityX, velocityY);
+        }
+        // fling 速度方向与 offset 变化方向相反
+        mNestedPreFlingVelocity = -velocityY;
         return dispatchNestedPreFling(velocityX, velocityY);
     }
 
@@ -894,108 +2234,368 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         return mNestedScrollingChildHelper.dispatchNestedPreFling(velocityX, velocityY);
     }
 
-    // 移动偏移量 offset
-    private void moveTarget(int offset) {
-        if (!mRefreshing && mCurrentTargetOffsetTop == 0 && offset > 0) {
-            if (mHeaderView != null) {
-                ((IPullRefreshHeader) mHeaderView).onReady(this);
+    private int getRefreshingHeight() {
+        if (mRefreshingHeight > 0) {
+            return mRefreshingHeight;
+        }
+        return getHeaderHeight();
+    }
+
+    private int getHeaderHeight() {
+        if (mHeaderView != null) {
+            return mHeaderView.getHeight();
+        }
+        return mHeaderDrawable != null && !isLazyHeader() ? mHeaderDrawable.getIntrinsicHeight() : 0;
+    }
+
+    /**
+     * @return The View header if there is one, otherwise the drawable header.
+     */
+    @Nullable
+    private IPullRefreshHeader getHeader() {
+        if (mHeaderView != null) {
+            return (IPullRefreshHeader) mHeaderView;
+        }
+        return isLazyHeader() ? null : mHeaderDrawable;
+    }
+
+    /**
+     * Set a header that is drawn by this layout instead of a header View, it
+     * is only used while there is no header child and no lazy header.
+     *
+     * @param drawable Header to draw, {@code null} restores the default one.
+     */
+    public void setHeaderDrawable(@Nullable IPullRefreshDrawable drawable) {
+        mHeaderDrawable = drawable;
+        invalidate();
+    }
+
+    /**
+     * Supply the header lazily, it is created on the first pull instead of being
+     * inflated, measured and laid out with the layout.
+     */
+    public void setHeaderFactory(@Nullable HeaderFactory factory) {
+        mHeaderFactory = factory;
+    }
+
+    /**
+     * Supply the header lazily from a layout resource, it is inflated on the
+     * first pull. The root view must implement {@link IPullRefreshHeader}.
+     */
+    public void setHeaderLayout(@LayoutRes int layoutRes) {
+        mHeaderLayoutRes = layoutRes;
+    }
+
+    /**
+     * @param mHeaderIdleTimeout Time in ms after {@link IPullRefreshHeader#onReset(PullRefreshLayout)}
+     *                           after which a lazily supplied header is removed from the
+     *                           layout again, 0 keeps it.
+     */
+    public void setHeaderIdleTimeout(int mHeaderIdleTimeout) {
+        this.mHeaderIdleTimeout = mHeaderIdleTimeout;
+        if (mHeaderIdleTimeout <= 0) {
+            removeCallbacks(detachHeaderAction);
+        }
+    }
+
+    private boolean isLazyHeader() {
+        return mHeaderFactory != null || mHeaderLayoutRes != 0;
+    }
+
+    /**
+     * 懒加载模式下创建 header 并立即测量和布局，不触发整个布局的重新布局；
+     * 没有任何 header 时使用默认的 {@link DefaultPullRefreshDrawable}
+     *
+     * @return Whether there is a header.
+     */
+    private boolean ensureHeader() {
+        removeCallbacks(detachHeaderAction);
+        if (mHeaderView != null) {
+            return true;
+        }
+        View header = mDetachedHeader;
+        if (header == null) {
+            if (mHeaderFactory != null) {
+                header = mHeaderFactory.createHeader(this);
+            } else if (mHeaderLayoutRes != 0) {
+                header = LayoutInflater.from(getContext()).inflate(mHeaderLayoutRes, this, false);
+            } else {
+                if (mHeaderDrawable == null) {
+                    mHeaderDrawable = new DefaultPullRefreshDrawable(getContext());
+                }
+                return true;
+            }
+            if (!(header instanceof IPullRefreshHeader)) {
+                throw new IllegalStateException("header must implement IPullRefreshHeader");
+            }
+        }
+        mDetachedHeader = null;
+        LayoutParams lp = header.getLayoutParams();
+        if (lp == null) {
+            lp = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+        }
+        addViewInLayout(header, 0, lp, true);
+        mHeaderView = header;
+        if (mLastWidthMeasureSpec != 0 || mLastHeightMeasureSpec != 0) {
+            measureHeader(mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+            layoutHeader();
+        } else {
+            requestLayout();
+        }
+        invalidate();
+        return true;
+    }
+
+    private void scheduleHeaderDetach() {
+        removeCallbacks(detachHeaderAction);
+        if (mHeaderIdleTimeout > 0 && isLazyHeader()) {
+            postDelayed(detachHeaderAction, mHeaderIdleTimeout);
+        }
+    }
+
+    private Runnable detachHeaderAction = new Runnable() {
+        @Override
+        public void run() {
+            if (mHeaderView == null || mRefreshing || mState != State.NONE
+                    || mCurrentTargetOffsetTop != 0 || mSettling || isOffsetAnimating()) {
+                return;
+            }
+            mDetachedHeader = mHeaderView;
+            mHeaderView = null;
+            removeViewInLayout(mDetachedHeader);
+            invalidate();
+        }
+    };
+
+    // 移动到未取整的偏移 offset
+    private void moveTargetTo(float offset) {
+        if (!mRefreshing && mTargetOffset <= 0 && offset > 0) {
+            if (ensureHeader()) {
+                flushHeaderCallbacks();
+                final long start = beginMetricsSection(PullMetricsRecorder.SECTION_HEADER);
+                getHeader().onReady(this);
+                endMetricsSection(PullMetricsRecorder.SECTION_HEADER, start);
             }
         }
-        setTargetOffsetTopAndBottom(offset);
+        applyTargetOffset(offset);
     }
 
-    private void finishSpinner(int overscrollTop) {
-        if (overscrollTop > mTriggerRefreshDistance) {
+    private void finishSpinner(int overscrollTop, float velocity) {
+        if (mEngine.shouldRefreshOnRelease(overscrollTop)) {
             if (!mRefreshing) {
                 mNotify = true;
+                mNotifyAsync = true;
                 ensureTarget();
                 mRefreshing = true;
                 changeState(State.REFRESH_RELEASED);
                 changeOffset();
-                animateOffsetTo(mRefreshingHeight > 0 ? mRefreshingHeight : mHeaderView.getHeight(), 0, mRefreshListener);
+                animateOffsetTo(getRefreshingHeight(), velocity, mRefreshListener);
             } else {
-                animateOffsetTo(mRefreshingHeight > 0 ? mRefreshingHeight : mHeaderView.getHeight(), 0, null);
+                animateOffsetTo(getRefreshingHeight(), velocity, null);
             }
         } else {
             if (!mRefreshing) {
-                animateOffsetTo(0, 0, mRefreshListener);
+                animateOffsetTo(0, velocity, mRefreshListener);
             }
         }
     }
 
     private void cancelAnimator() {
-        if (mOffsetAnimator != null && mOffsetAnimator.isRunning()) {
+        if (isOffsetAnimating()) {
             mOffsetAnimator.cancel();
         }
+        cancelSettle();
     }
 
-    private void animateOffsetTo(final int target, float velocity, Animator.AnimatorListener listener) {
-        final int distance = Math.abs(target - mCurrentTargetOffsetTop);
+    private boolean isOffsetAnimating() {
+        final int mode = mOffsetAnimator.getMode();
+        return mode == OffsetAnimator.MODE_TWEEN || mode == OffsetAnimator.MODE_SPRING;
+    }
 
-        final int duration;
-        velocity = Math.abs(velocity);
-        if (velocity > 0) {
-            duration = 3 * Math.round(1000 * (distance / velocity));
-        } else {
-            final float distanceRatio = (float) distance / mHeaderView.getHeight();
-            duration = (int) ((distanceRatio + 1) * 150);
+    /**
+     * @param velocity Velocity of the offset in pixels per second, positive
+     *                 when the header is being pulled further down.
+     */
+    private void animateOffsetTo(final int target, float velocity, OffsetAnimationListener listener) {
+        if (mSpringSettle) {
+            animateOffsetWithSpring(target, velocity, listener);
+            return;
         }
-
+        final int duration = mEngine.computeSettleDuration(mCurrentTargetOffsetTop, target, velocity, getHeaderHeight());
         animateOffsetWithDuration(target, duration, listener);
     }
 
 
-    private void animateOffsetWithDuration(int target, int duration, Animator.AnimatorListener listener) {
+    private void animateOffsetWithDuration(int target, int duration, OffsetAnimationListener listener) {
         mIsOverAnimating = true;
         if (mCurrentTargetOffsetTop == target) {
-            if (mOffsetAnimator != null && mOffsetAnimator.isRunning()) {
+            endMetrics(PullRefreshMetrics.Phase.ANIMATION);
+            if (mSettling) {
+                if (listener != null) {
+                    listener.onAnimationEnd();
+                }
+                cancelSettle();
+            }
+            if (isOffsetAnimating()) {
                 // 直接回调动画结束
                 if (listener != null) {
-                    listener.onAnimationEnd(mOffsetAnimator);
+                    listener.onAnimationEnd();
                 }
                 mOffsetAnimator.cancel();
+            } else {
+                // 没有动画在执行，直接回调动画结束，保证 reset 和刷新回调照常执行
+                mIsOverAnimating = false;
+                if (listener != null) {
+                    listener.onAnimationEnd();
+                }
+                onMovementEnd();
             }
             return;
         }
 
-        if (mOffsetAnimator == null) {
-            mOffsetAnimator = new ValueAnimator();
-            mOffsetAnimator.setInterpolator(mDecelerateInterpolator);
-            mOffsetAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int value = (int) animation.getAnimatedValue();
-                    moveTarget(value - mCurrentTargetOffsetTop);
-                }
-            });
-        } else {
+        if (duration > 0 && canSettleOnRenderThread()) {
             mOffsetAnimator.cancel();
+            settleOnRenderThread(target, Math.min(duration, MAX_OFFSET_ANIMATION_DURATION), listener);
+            return;
+        }
+        cancelSettle();
+        mOffsetAnimator.cancel();
+        if (listener != null) {
+            mOffsetListener = listener;
+        }
+        // cancel 会回调 onAnimationCancel，这里重新标记动画中
+        mIsOverAnimating = true;
+        beginMetrics(PullRefreshMetrics.Phase.ANIMATION);
+        mOffsetAnimator.start(mCurrentTargetOffsetTop, target, Math.min(duration, MAX_OFFSET_ANIMATION_DURATION));
+    }
+
+    private void animateOffsetWithSpring(int target, float velocity, OffsetAnimationListener listener) {
+        if (mCurrentTargetOffsetTop == target && velocity == 0) {
+            animateOffsetWithDuration(target, 0, listener);
+            return;
         }
+        cancelSettle();
+        mOffsetAnimator.cancel();
         if (listener != null) {
-            mOffsetAnimator.removeAllListeners();
-            mOffsetAnimator.addListener(listener);
+            mOffsetListener = listener;
+        }
+        mIsOverAnimating = true;
+        beginMetrics(PullRefreshMetrics.Phase.ANIMATION);
+        mOffsetAnimator.spring(mCurrentTargetOffsetTop, target, velocity, mSpringStiffness, mSpringDampingRatio);
+    }
+
+    private boolean canSettleOnRenderThread() {
+        // drawable header 在 dispatchDraw 中按 offset 绘制，跟不上 RenderThread 上的 translationY，只能在主线程执行动画
+        return mRenderThreadSettle && Build.VERSION.SDK_INT >= 21
+                && mHeaderView != null && mTarget != null && isHardwareAccelerated();
+    }
+
+    /**
+     * 通过 translationY 在 RenderThread 上执行动画，结束后再把位移同步到真实的 offset 上。
+     * 不设置任何动画监听，保证 ViewPropertyAnimator 可以交给 RenderThread 执行。
+     */
+    @TargetApi(21)
+    private void settleOnRenderThread(int target, int duration, OffsetAnimationListener listener) {
+        cancelSettle();
+        mIsOverAnimating = true;
+        mSettling = true;
+        mSettleOffset = target - mCurrentTargetOffsetTop;
+        // 与 mOffsetAnimator 一致，未传入 listener 时沿用之前的 listener
+        if (listener != null || mSettleListener == null) {
+            mSettleListener = listener != null ? listener : mRefreshListener;
+        }
+        beginMetrics(PullRefreshMetrics.Phase.ANIMATION);
+        if (mHeaderView != null) {
+            startSettle(mHeaderView, mSettleOffset, duration);
+        }
+        if (!mIsPinContent) {
+            startSettle(mTarget, mSettleOffset, duration);
+        }
+        postDelayed(settleEndAction, duration);
+    }
+
+    @TargetApi(21)
+    private void startSettle(View view, int offset, int duration) {
+        view.animate()
+                .setListener(null)
+                .setUpdateListener(null)
+                .setStartDelay(0)
+                .setInterpolator(mDecelerateInterpolator)
+                .setDuration(duration)
+                .translationY(offset)
+                .start();
+    }
+
+    private void cancelSettle() {
+        if (!mSettling) {
+            return;
+        }
+        removeCallbacks(settleEndAction);
+        if (mHeaderView != null) {
+            mHeaderView.animate().cancel();
         }
+        mTarget.animate().cancel();
+        // 固定内容模式下只有 header 在移动
+        final View settleView = mIsPinContent && mHeaderView != null ? mHeaderView : mTarget;
+        commitSettle(Math.round(settleView.getTranslationY()));
+        mIsOverAnimating = false;
+    }
 
-        mOffsetAnimator.setDuration(Math.min(duration, MAX_OFFSET_ANIMATION_DURATION));
-        mOffsetAnimator.setIntValues(mCurrentTargetOffsetTop, target);
-        mOffsetAnimator.start();
+    private void commitSettle(int offset) {
+        mSettling = false;
+        if (mHeaderView != null) {
+            mHeaderView.setTranslationY(0);
+        }
+        mTarget.setTranslationY(0);
+        if (offset != 0) {
+            moveTargetTo(mCurrentTargetOffsetTop + offset);
+        }
     }
 
     void setTargetOffsetTopAndBottom(int offset) {
-        mHeaderView.bringToFront();
-        ViewCompat.offsetTopAndBottom(mHeaderView, offset);
-        ViewCompat.offsetTopAndBottom(mTarget, offset);
-        mCurrentTargetOffsetTop += offset;
+        applyTargetOffset(mCurrentTargetOffsetTop + offset);
+    }
+
+    /**
+     * 记录未取整的偏移，只有取整后的像素发生变化时才移动 header 和内容
+     */
+    private void applyTargetOffset(float targetOffset) {
+        final long start = beginMetricsSection(PullMetricsRecorder.SECTION_SET_OFFSET);
+        final int offset = Math.round(targetOffset) - mCurrentTargetOffsetTop;
+        if (offset != 0) {
+            if (mIsBeingDragged || mNestedScrollInProgress || mOffsetAnimator.isRunning()) {
+                promoteLayers();
+            }
+            if (mHeaderView != null) {
+                ViewCompat.offsetTopAndBottom(mHeaderView, offset);
+            }
+            if (!mIsPinContent) {
+                ViewCompat.offsetTopAndBottom(mTarget, offset);
+            }
+            final int oldOffset = mCurrentTargetOffsetTop;
+            mCurrentTargetOffsetTop += offset;
+            if (mHeaderView != null || mHeaderDrawable != null) {
+                // 露出的区域变化，header 的裁剪区域需要更新，只重绘这一条区域，内容不会重绘
+                final int top = getPaddingTop();
+                invalidate(getPaddingLeft(), top, getWidth() - getPaddingRight(),
+                        top + Math.max(oldOffset, mCurrentTargetOffsetTop) + Math.max(mHeaderOffset, 0));
+            }
+            updateTargetOverScroll(mCurrentTargetOffsetTop > 0);
+        }
+        mTargetOffset = targetOffset;
         if (!mRefreshing) {
             State newState;
-            if (mCurrentTargetOffsetTop < mTriggerRefreshDistance) {
+            if (!mEngine.isReleaseToRefresh(mTargetOffset)) {
                 newState = State.PULL_TO_REFRESH;
+                // 拉回到触发距离以下，提前开始的刷新作废
+                cancelPrepareRefresh();
             } else {
                 newState = State.RELEASE_TO_REFRESH;
             }
             changeState(newState);
         }
         changeOffset();
+        endMetricsSection(PullMetricsRecorder.SECTION_SET_OFFSET, start);
     }
 
     private void onSecondaryPointerUp(MotionEvent ev) {
@@ -1006,9 +2606,102 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
             // active pointer and adjust accordingly.
             final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
             mActivePointerId = ev.getPointerId(newPointerIndex);
+            // 换手指后从新手指的位置继续计算，避免偏移跳变
+            mLastMotionY = ev.getY(newPointerIndex);
         }
     }
 
+    /**
+     * Listener of the offset animations started by animateOffsetTo.
+     */
+    private interface OffsetAnimationListener {
+        void onAnimationEnd();
+
+        void onAnimationCancel();
+    }
+
+    /**
+     * Classes that wish to create the header lazily should implement this interface.
+     */
+    public interface HeaderFactory {
+        /**
+         * Called on the first pull to create the header.
+         *
+         * @param parent PullRefreshLayout the header will be added to.
+         * @return Header view, must implement {@link IPullRefreshHeader}.
+         */
+        @NonNull
+        View createHeader(@NonNull PullRefreshLayout parent);
+    }
+
+    /**
+     * Classes that wish to run a cheaper check instead of a full refresh while
+     * the content is still fresh should implement this interface.
+     */
+    public interface OnRevalidateListener {
+        /**
+         * Called instead of the refresh listeners when a pull happens within the
+         * freshness TTL of the last successful refresh.
+         */
+        void onRevalidate();
+    }
+
+    /**
+     * Classes that wish to refresh asynchronously and have the layout manage
+     * cancellation and completion should implement this interface.
+     */
+    public interface AsyncRefreshListener {
+        /**
+         * Called when a refresh should start, either from the swipe gesture or
+         * from {@link PullRefreshLayout#setRefreshing(boolean, boolean)}.
+         *
+         * @param signal Canceled when the layout is detached, disabled, the refresh
+         *               is stopped or it times out. Stop the work when it fires.
+         * @return Handle to complete once the refresh has finished.
+         */
+        @NonNull
+        RefreshHandle onRefresh(@NonNull CancellationSignal signal);
+    }
+
+    /**
+     * Classes that wish to start refreshing before the pull gesture is released
+     * should implement this interface.
+     */
+    public interface OnPrepareRefreshListener {
+        /**
+         * Called when the ongoing pull is predicted to trigger a refresh.
+         *
+         * @param signal Canceled when the user pulls back above the trigger
+         *               distance and the refresh will not happen.
+         */
+        void onPrepareRefresh(@NonNull CancellationSignal signal);
+    }
+
+    /**
+     * Classes that wish to be notified when the content is scrolled close to its
+     * end should implement this interface.
+     */
+    public interface OnLoadMoreListener {
+        /**
+         * Called when the next page should be loaded, call
+         * {@link PullRefreshLayout#setLoadMoreComplete(boolean)} once it has been loaded.
+         */
+        void onLoadMore();
+    }
+
+    /**
+     * Receives the result of
+     * {@link #setRefreshComplete(List, DiffUtil.Callback, OnRefreshResultListener)}
+     * on the main thread once it is time to apply it.
+     */
+    public interface OnRefreshResultListener<T> {
+        /**
+         * Swap the data of the adapter to {@code newList} here. When the target is
+         * not a RecyclerView dispatch {@code diffResult} to the adapter as well.
+         */
+        void onRefreshResult(List<T> newList, DiffUtil.DiffResult diffResult);
+    }
+
     /**
      * Classes that wish to be notified when the swipe gesture correctly
      * triggers a refresh should implement this interface.
@@ -1020,6 +2713,20 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
         void onRefresh();
     }
 
+    /**
+     * Classes that wish to measure the cost of pull gestures should implement
+     * this interface.
+     */
+    public interface OnPullMetricsListener {
+        /**
+         * Called when a drag, fling or offset animation has finished.
+         *
+         * @param layout  PullRefreshLayout the metrics were recorded on.
+         * @param metrics Metrics of the finished phase, reused after this call returns.
+         */
+        void onPullMetrics(@NonNull PullRefreshLayout layout, @NonNull PullRefreshMetrics metrics);
+    }
+
     /**
      * Classes that wish to override {@link android.support.v4.widget.SwipeRefreshLayout#canChildScrollUp()} method
      * behavior should implement this interface.
@@ -1035,4 +2742,49 @@ public class PullRefreshLayout extends ViewGroup implements NestedScrollingParen
          */
         boolean canChildScrollUp(@NonNull PullRefreshLayout parent, @Nullable View child);
     }
-}
\ No newline at end of file
+
+    static class SavedState extends AbsSavedState {
+        long lastRefreshSuccessTime;
+        boolean refreshing;
+        boolean notifyPending;
+        boolean notifyAsyncPending;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel source, ClassLoader loader) {
+            super(source, loader);
+            lastRefreshSuccessTime = source.readLong();
+            refreshing = source.readInt() != 0;
+            notifyPending = source.readInt() != 0;
+            notifyAsyncPending = source.readInt() != 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            super.writeToParcel(dest, flags);
+            dest.writeLong(lastRefreshSuccessTime);
+            dest.writeInt(refreshing ? 1 : 0);
+            dest.writeInt(notifyPending ? 1 : 0);
+            dest.writeInt(notifyAsyncPending ? 1 : 0);
+        }
+
+        public static final Creator<SavedState> CREATOR = new ClassLoaderCreator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in, ClassLoader loader) {
+                return new SavedState(in, loader);
+            }
+
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in, null);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+}
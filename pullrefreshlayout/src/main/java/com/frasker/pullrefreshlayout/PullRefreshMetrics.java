@@ -0,0 +1,119 @@
+package com.frasker.pullrefreshlayout;
+
+/**
+ * Frame timing collected by {@link PullRefreshLayout} for one drag, fling or
+ * offset animation. The instance is reused by the layout, copy the values out
+ * if they are needed after
+ * {@link PullRefreshLayout.OnPullMetricsListener#onPullMetrics(PullRefreshLayout, PullRefreshMetrics)}
+ * returns.
+ */
+public final class PullRefreshMetrics {
+
+    public enum Phase {
+        DRAG,
+        FLING,
+        ANIMATION,
+    }
+
+    Phase mPhase;
+    int mFrameCount;
+    int mDroppedFrames;
+    long mFrameIntervalNanos;
+    long mDurationNanos;
+    long mSetOffsetNanos;
+    long mChangeOffsetNanos;
+    long mHeaderCallbackNanos;
+    int mHeaderCallbackCount;
+
+    PullRefreshMetrics() {
+    }
+
+    void clear() {
+        mPhase = null;
+        mFrameCount = 0;
+        mDroppedFrames = 0;
+        mFrameIntervalNanos = 0;
+        mDurationNanos = 0;
+        mSetOffsetNanos = 0;
+        mChangeOffsetNanos = 0;
+        mHeaderCallbackNanos = 0;
+        mHeaderCallbackCount = 0;
+    }
+
+    /**
+     * @return What kind of movement these numbers were recorded for.
+     */
+    public Phase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * @return Number of Choreographer frames seen while the phase was running.
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return Number of vsync intervals that passed without a frame being drawn.
+     */
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * @return Expected frame interval of the display the layout is attached to.
+     */
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    /**
+     * @return Wall time between the start and the end of the phase.
+     */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    /**
+     * @return Time spent in setTargetOffsetTopAndBottom, header callbacks included.
+     */
+    public long getSetOffsetNanos() {
+        return mSetOffsetNanos;
+    }
+
+    /**
+     * @return Time spent dispatching offset changes, header callbacks included.
+     */
+    public long getChangeOffsetNanos() {
+        return mChangeOffsetNanos;
+    }
+
+    /**
+     * @return Time spent inside {@link IPullRefreshHeader} callbacks.
+     */
+    public long getHeaderCallbackNanos() {
+        return mHeaderCallbackNanos;
+    }
+
+    /**
+     * @return Number of {@link IPullRefreshHeader} callbacks made.
+     */
+    public int getHeaderCallbackCount() {
+        return mHeaderCallbackCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PullRefreshMetrics{" +
+                "phase=" + mPhase +
+                ", frames=" + mFrameCount +
+                ", dropped=" + mDroppedFrames +
+                ", durationNanos=" + mDurationNanos +
+                ", setOffsetNanos=" + mSetOffsetNanos +
+                ", changeOffsetNanos=" + mChangeOffsetNanos +
+                ", headerNanos=" + mHeaderCallbackNanos +
+                ", headerCalls=" + mHeaderCallbackCount +
+                '}';
+    }
+}
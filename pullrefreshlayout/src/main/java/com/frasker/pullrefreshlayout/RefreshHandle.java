@@ -0,0 +1,84 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Completion handle returned from
+ * {@link PullRefreshLayout.AsyncRefreshListener#onRefresh(android.support.v4.os.CancellationSignal)}.
+ * Call {@link #complete(boolean)} from any thread once the refresh has finished,
+ * the layout switches to REFRESH_SUCCESS or REFRESH_FAILURE on the main thread.
+ */
+public final class RefreshHandle {
+
+    private static Handler sMainHandler;
+
+    private PullRefreshLayout mLayout;
+    private boolean mCompleted;
+    private boolean mSuccess;
+
+    public RefreshHandle() {
+    }
+
+    /**
+     * Finish the refresh, calls after the first one are ignored.
+     *
+     * @param success Whether the refresh succeeded.
+     */
+    public void complete(boolean success) {
+        final PullRefreshLayout layout;
+        synchronized (this) {
+            if (mCompleted) {
+                return;
+            }
+            mCompleted = true;
+            mSuccess = success;
+            layout = mLayout;
+        }
+        if (layout != null) {
+            dispatchComplete(layout, success);
+        }
+    }
+
+    /**
+     * @return Whether {@link #complete(boolean)} has been called.
+     */
+    public synchronized boolean isCompleted() {
+        return mCompleted;
+    }
+
+    void attach(PullRefreshLayout layout) {
+        final boolean completed;
+        final boolean success;
+        synchronized (this) {
+            mLayout = layout;
+            completed = mCompleted;
+            success = mSuccess;
+        }
+        if (completed) {
+            dispatchComplete(layout, success);
+        }
+    }
+
+    synchronized void detach() {
+        mLayout = null;
+    }
+
+    private void dispatchComplete(final PullRefreshLayout layout, final boolean success) {
+        final Runnable action = new Runnable() {
+            @Override
+            public void run() {
+                layout.onRefreshHandleComplete(RefreshHandle.this, success);
+            }
+        };
+        // 即使在主线程完成也延后处理，保证 onRefresh 已经返回
+        getMainHandler().post(action);
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+}
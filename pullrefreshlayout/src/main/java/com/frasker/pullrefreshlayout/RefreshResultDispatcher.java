@@ -0,0 +1,132 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the DiffUtil result of a refresh on a background executor and
+ * applies it once {@link PullRefreshLayout} says the frame window is cheap
+ * enough. Only the latest result is kept, a result that is still being
+ * computed is dropped when a new one is submitted. A diff that throws fails
+ * the refresh.
+ */
+final class RefreshResultDispatcher {
+
+    private static Handler sMainHandler;
+    private static ExecutorService sDefaultExecutor;
+
+    private final PullRefreshLayout mLayout;
+    private Executor mExecutor;
+    private int mGeneration; // 每次提交递增，丢弃过期的计算结果
+    private Pending<?> mPending; // 已经计算完成，等待应用的结果
+
+    RefreshResultDispatcher(PullRefreshLayout layout) {
+        mLayout = layout;
+    }
+
+    void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    <T> void submit(final List<T> newList, final DiffUtil.Callback callback, final boolean detectMoves,
+                    final PullRefreshLayout.OnRefreshResultListener<T> listener) {
+        // 上一次的结果先应用，保证新的 callback 中的旧数据与 adapter 一致
+        applyPending();
+        final int generation = ++mGeneration;
+        final Executor executor = mExecutor != null ? mExecutor : getDefaultExecutor();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result;
+                try {
+                    result = DiffUtil.calculateDiff(callback, detectMoves);
+                } catch (final RuntimeException e) {
+                    // callback 抛出异常时按刷新失败处理，不能让 layout 一直停在刷新中
+                    getMainHandler().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mGeneration) {
+                                mLayout.onRefreshResultFailed(e);
+                            }
+                        }
+                    });
+                    return;
+                }
+                getMainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mPending = new Pending<>(newList, result, listener);
+                            mLayout.onRefreshResultReady();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    boolean hasPending() {
+        return mPending != null;
+    }
+
+    void applyPending() {
+        final Pending<?> pending = mPending;
+        if (pending != null) {
+            mPending = null;
+            pending.apply(mLayout.getTargetView());
+        }
+    }
+
+    private static final class Pending<T> {
+        final List<T> mNewList;
+        final DiffUtil.DiffResult mResult;
+        final PullRefreshLayout.OnRefreshResultListener<T> mListener;
+
+        Pending(List<T> newList, DiffUtil.DiffResult result, PullRefreshLayout.OnRefreshResultListener<T> listener) {
+            mNewList = newList;
+            mResult = result;
+            mListener = listener;
+        }
+
+        void apply(View target) {
+            mListener.onRefreshResult(mNewList, mResult);
+            if (target instanceof RecyclerView) {
+                final RecyclerView.Adapter adapter = ((RecyclerView) target).getAdapter();
+                if (adapter != null) {
+                    mResult.dispatchUpdatesTo(adapter);
+                }
+            }
+        }
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "PullRefreshLayout-diff");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return sDefaultExecutor;
+    }
+}
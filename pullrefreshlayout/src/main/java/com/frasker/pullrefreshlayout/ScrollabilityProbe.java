@@ -0,0 +1,18 @@
+package com.frasker.pullrefreshlayout;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * Decides whether the target of {@link PullRefreshLayout} can still scroll up.
+ * The layout picks a probe specialized for the target type and caches its
+ * result until the target scrolls, set a custom probe with
+ * {@link PullRefreshLayout#setScrollabilityProbe(ScrollabilityProbe)}.
+ */
+public interface ScrollabilityProbe {
+
+    /**
+     * @return Whether the target can scroll towards its top.
+     */
+    boolean canScrollUp(@NonNull View target);
+}
@@ -0,0 +1,89 @@
+package com.frasker.pullrefreshlayout;
+
+import android.support.annotation.NonNull;
+import android.support.v4.widget.NestedScrollView;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.webkit.WebView;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+/**
+ * Built-in {@link ScrollabilityProbe}s. They only look at the first child or
+ * the scroll position instead of asking the view to compute its scroll range.
+ */
+final class ScrollabilityProbes {
+
+    private ScrollabilityProbes() {
+    }
+
+    static ScrollabilityProbe forTarget(View target) {
+        if (target instanceof RecyclerView) {
+            return RECYCLER_VIEW;
+        }
+        if (target instanceof AbsListView) {
+            return ABS_LIST_VIEW;
+        }
+        if (target instanceof ScrollView || target instanceof NestedScrollView
+                || target instanceof WebView) {
+            return SCROLL_Y;
+        }
+        return DEFAULT;
+    }
+
+    static final ScrollabilityProbe DEFAULT = new ScrollabilityProbe() {
+        @Override
+        public boolean canScrollUp(@NonNull View target) {
+            return target.canScrollVertically(-1);
+        }
+    };
+
+    static final ScrollabilityProbe RECYCLER_VIEW = new ScrollabilityProbe() {
+        @Override
+        public boolean canScrollUp(@NonNull View target) {
+            final RecyclerView recyclerView = (RecyclerView) target;
+            final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            if (!(layoutManager instanceof LinearLayoutManager)
+                    || ((LinearLayoutManager) layoutManager).getReverseLayout()
+                    || ((LinearLayoutManager) layoutManager).getOrientation() != LinearLayoutManager.VERTICAL) {
+                return target.canScrollVertically(-1);
+            }
+            if (recyclerView.getChildCount() == 0) {
+                return false;
+            }
+            final View first = recyclerView.getChildAt(0);
+            final int position = recyclerView.getChildAdapterPosition(first);
+            if (position == RecyclerView.NO_POSITION) {
+                // 正在执行动画或数据刚改变，交给 RecyclerView 自己判断
+                return target.canScrollVertically(-1);
+            }
+            if (position > 0) {
+                return true;
+            }
+            final int top = layoutManager.getDecoratedTop(first)
+                    - ((RecyclerView.LayoutParams) first.getLayoutParams()).topMargin;
+            return top < (recyclerView.getClipToPadding() ? recyclerView.getPaddingTop() : 0);
+        }
+    };
+
+    static final ScrollabilityProbe ABS_LIST_VIEW = new ScrollabilityProbe() {
+        @Override
+        public boolean canScrollUp(@NonNull View target) {
+            final AbsListView listView = (AbsListView) target;
+            final int childCount = listView.getChildCount();
+            if (childCount == 0) {
+                return false;
+            }
+            return listView.getFirstVisiblePosition() > 0
+                    || listView.getChildAt(0).getTop() < listView.getListPaddingTop();
+        }
+    };
+
+    static final ScrollabilityProbe SCROLL_Y = new ScrollabilityProbe() {
+        @Override
+        public boolean canScrollUp(@NonNull View target) {
+            return target.getScrollY() > 0;
+        }
+    };
+}
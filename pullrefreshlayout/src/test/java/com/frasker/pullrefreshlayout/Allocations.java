@@ -0,0 +1,62 @@
+package com.frasker.pullrefreshlayout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Bytes allocated by the current thread, read from the HotSpot ThreadMXBean.
+ * The HotSpot extension is looked up reflectively, on other JVMs
+ * {@link #isSupported()} returns false.
+ */
+final class Allocations {
+
+    // (long threadId)long，绑定到 ThreadMXBean，调用时不装箱也不创建参数数组
+    private static final MethodHandle GET_THREAD_ALLOCATED_BYTES = findGetThreadAllocatedBytes();
+
+    static {
+        if (GET_THREAD_ALLOCATED_BYTES != null) {
+            // 先调用一次完成调用点的链接，之后的调用不再分配
+            allocatedBytes();
+        }
+    }
+
+    private Allocations() {
+    }
+
+    static boolean isSupported() {
+        return GET_THREAD_ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * @return Bytes allocated by the current thread so far, 0 when not supported.
+     */
+    static long allocatedBytes() {
+        if (GET_THREAD_ALLOCATED_BYTES == null) {
+            return 0;
+        }
+        try {
+            return (long) GET_THREAD_ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findGetThreadAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            final Class<?> hotSpotBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!hotSpotBean.isInstance(bean)
+                    || !(Boolean) hotSpotBean.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) {
+                return null;
+            }
+            final Method method = hotSpotBean.getMethod("getThreadAllocatedBytes", long.class);
+            return MethodHandles.publicLookup().unreflect(method).bindTo(bean);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 不是 HotSpot，或者没有开放 com.sun.management
+            return null;
+        }
+    }
+}
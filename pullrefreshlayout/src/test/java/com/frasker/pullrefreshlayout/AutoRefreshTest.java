@@ -0,0 +1,168 @@
+package com.frasker.pullrefreshlayout;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when the periodic and on-resume refreshes of {@link PullRefreshLayout} start.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class AutoRefreshTest {
+
+    private static final int FRAME_MS = LayoutTestRule.FRAME_MS;
+    private static final int INTERVAL = 1000;
+    // 足够完成刷新动画和刷新结束后的回弹
+    private static final int ANIMATION_MS = 1000;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private CountingViews.Layout mLayout;
+    private int mRefreshCount;
+
+    @Before
+    public void setUp() {
+        mLayout = mRule.newLayout();
+        mLayout.setOnRefreshListener(new PullRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                mRefreshCount++;
+            }
+        });
+        mRule.attach(mLayout);
+    }
+
+    @Test
+    public void refreshesPeriodically() {
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        advance(INTERVAL - FRAME_MS);
+        assertEquals(0, mRefreshCount);
+        advance(ANIMATION_MS);
+        assertEquals(1, mRefreshCount);
+        assertTrue(mLayout.isRefreshing());
+
+        mLayout.setRefreshComplete(true);
+        advance(INTERVAL - FRAME_MS);
+        assertEquals(1, mRefreshCount);
+        advance(ANIMATION_MS);
+        assertEquals(2, mRefreshCount);
+    }
+
+    @Test
+    public void backsOffAfterFailures() {
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        advance(INTERVAL + ANIMATION_MS);
+        assertEquals(1, mRefreshCount);
+
+        mLayout.setRefreshComplete(false);
+        advance(2 * INTERVAL - FRAME_MS);
+        assertEquals(1, mRefreshCount);
+        advance(ANIMATION_MS);
+        assertEquals(2, mRefreshCount);
+
+        mLayout.setRefreshComplete(false);
+        advance(4 * INTERVAL - FRAME_MS);
+        assertEquals(2, mRefreshCount);
+        advance(ANIMATION_MS);
+        assertEquals(3, mRefreshCount);
+
+        // 成功后恢复原来的间隔
+        mLayout.setRefreshComplete(true);
+        advance(INTERVAL + ANIMATION_MS);
+        assertEquals(4, mRefreshCount);
+    }
+
+    @Test
+    public void pausesWhileHiddenOrDisabled() {
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        mLayout.setVisibility(View.GONE);
+        advance(5 * INTERVAL);
+        assertEquals(0, mRefreshCount);
+
+        mLayout.setVisibility(View.VISIBLE);
+        advance(ANIMATION_MS);
+        assertEquals(1, mRefreshCount);
+
+        mLayout.setRefreshComplete(true);
+        mLayout.setEnabled(false);
+        advance(5 * INTERVAL);
+        assertEquals(1, mRefreshCount);
+    }
+
+    @Test
+    public void pausesWhileDetached() {
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        final ViewGroup parent = (ViewGroup) mLayout.getParent();
+        parent.removeView(mLayout);
+        advance(5 * INTERVAL);
+        assertEquals(0, mRefreshCount);
+    }
+
+    @Test
+    public void doesNotStartWhileRefreshing() {
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        mLayout.setRefreshing(true, false);
+        advance(3 * INTERVAL);
+        // setRefreshing 不通知 OnRefreshListener，自动刷新也没有再启动
+        assertEquals(0, mRefreshCount);
+        assertTrue(mLayout.isRefreshing());
+    }
+
+    @Test
+    public void skipsPeriodicRefreshWhileFresh() {
+        mLayout.setRefreshFreshnessTtl(3 * INTERVAL);
+        mLayout.setAutoRefreshInterval(INTERVAL);
+        advance(INTERVAL + ANIMATION_MS);
+        assertEquals(1, mRefreshCount);
+        mLayout.setRefreshComplete(true);
+        advance(ANIMATION_MS);
+        mLayout.resetCounts();
+
+        // 还在新鲜期内的周期刷新直接跳过，不会显示刷新或成功状态
+        advance(INTERVAL);
+        assertEquals(1, mRefreshCount);
+        assertFalse(mLayout.isRefreshing());
+        assertTrue(mLayout.getCountingHeader().states.isEmpty());
+
+        advance(3 * INTERVAL);
+        assertEquals(2, mRefreshCount);
+    }
+
+    @Test
+    public void refreshesOnResumeUnlessFresh() {
+        mLayout.setRefreshFreshnessTtl(10 * INTERVAL);
+        mLayout.setAutoRefreshOnResume(true);
+        advance(ANIMATION_MS);
+        // 设置时已经可见，立即刷新一次
+        assertEquals(1, mRefreshCount);
+        mLayout.setRefreshComplete(true);
+        advance(ANIMATION_MS);
+
+        mLayout.setVisibility(View.INVISIBLE);
+        mLayout.setVisibility(View.VISIBLE);
+        advance(ANIMATION_MS);
+        assertEquals(1, mRefreshCount);
+
+        advance(10 * INTERVAL);
+        mLayout.setVisibility(View.INVISIBLE);
+        mLayout.setVisibility(View.VISIBLE);
+        advance(ANIMATION_MS);
+        assertEquals(2, mRefreshCount);
+    }
+
+    private void advance(long millis) {
+        mRule.advance(millis);
+    }
+}
@@ -0,0 +1,178 @@
+package com.frasker.pullrefreshlayout;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Views that count their measure/layout passes and header callbacks, used by
+ * the performance tests.
+ */
+final class CountingViews {
+
+    static final int HEADER_HEIGHT = 150;
+    static final int ITEM_HEIGHT = 100;
+    static final int ITEM_COUNT = 50;
+
+    private CountingViews() {
+    }
+
+    static Layout createLayout(Context context) {
+        final Layout layout = new Layout(context);
+        final Header header = new Header(context);
+        // header 高度由自身测量决定，便于验证固定高度模式
+        layout.addView(header, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        final Target target = new Target(context);
+        target.setLayoutManager(new LinearLayoutManager(context));
+        target.setAdapter(new Adapter());
+        layout.addView(target, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        // 代码创建时不会回调 onFinishInflate，手动调用以识别 header 和内容
+        layout.onFinishInflate();
+        return layout;
+    }
+
+    static class Layout extends PullRefreshLayout {
+        int requestLayoutCount;
+        boolean hardwareAccelerated; // Robolectric 中没有硬件加速，测试硬件层时手动打开
+
+        Layout(Context context) {
+            super(context);
+        }
+
+        Header getCountingHeader() {
+            return (Header) getChildAt(0);
+        }
+
+        Target getCountingTarget() {
+            return (Target) getChildAt(1);
+        }
+
+        @Override
+        public void requestLayout() {
+            requestLayoutCount++;
+            super.requestLayout();
+        }
+
+        @Override
+        public boolean isHardwareAccelerated() {
+            return hardwareAccelerated || super.isHardwareAccelerated();
+        }
+
+        void resetCounts() {
+            requestLayoutCount = 0;
+            getCountingHeader().resetCounts();
+            getCountingTarget().resetCounts();
+        }
+    }
+
+    static class Header extends View implements IPullRefreshHeader {
+        int measureCount;
+        int layoutCount;
+        int readyCount;
+        int resetCount;
+        int offsetChangedCount;
+        int lastOffset;
+        int maxOffset;
+        final List<PullRefreshLayout.State> states = new ArrayList<>(32);
+
+        Header(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measureCount++;
+            setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                    resolveSize(HEADER_HEIGHT, heightMeasureSpec));
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            layoutCount++;
+        }
+
+        @Override
+        public void onReady(PullRefreshLayout refreshLayout) {
+            readyCount++;
+        }
+
+        @Override
+        public void onReset(PullRefreshLayout refreshLayout) {
+            resetCount++;
+        }
+
+        @Override
+        public void onOffsetTopChanged(PullRefreshLayout refreshLayout, int offset, float progress, PullRefreshLayout.State state) {
+            offsetChangedCount++;
+            lastOffset = offset;
+            maxOffset = Math.max(maxOffset, offset);
+        }
+
+        @Override
+        public void onStateChanged(PullRefreshLayout refreshLayout, PullRefreshLayout.State newState) {
+            states.add(newState);
+        }
+
+        void resetCounts() {
+            measureCount = 0;
+            layoutCount = 0;
+            readyCount = 0;
+            resetCount = 0;
+            offsetChangedCount = 0;
+            lastOffset = 0;
+            maxOffset = 0;
+            states.clear();
+        }
+    }
+
+    static class Target extends RecyclerView {
+        int measureCount;
+        int layoutCount;
+
+        Target(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthSpec, int heightSpec) {
+            measureCount++;
+            super.onMeasure(widthSpec, heightSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            layoutCount++;
+            super.onLayout(changed, l, t, r, b);
+        }
+
+        void resetCounts() {
+            measureCount = 0;
+            layoutCount = 0;
+        }
+    }
+
+    private static class Adapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final View item = new View(parent.getContext());
+            item.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+            return new RecyclerView.ViewHolder(item) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return ITEM_COUNT;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records gestures on one layout and replays them on another one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class GestureTraceTest {
+
+    private static final int FRAME_MS = LayoutTestRule.FRAME_MS;
+    private static final float TOUCH_X = 100;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private final List<Integer> mLiveOffsets = new ArrayList<>();
+
+    private final GestureTraceReplayer.Clock mClock = new GestureTraceReplayer.Clock() {
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void advanceTo(long uptimeMillis) {
+            mRule.advanceTo(uptimeMillis);
+        }
+    };
+
+    @Test
+    public void touchTraceReplaysSameOffsetsAndStates() throws IOException {
+        final CountingViews.Layout recorded = createLayout();
+        recorded.getCountingTarget().setNestedScrollingEnabled(false);
+        final GestureTraceRecorder recorder = new GestureTraceRecorder();
+        final long duration = recordTouchPull(recorded, recorder);
+
+        assertFalse(recorder.isTruncated());
+        assertEquals(14, recorder.getEventCount());
+        final GestureTrace trace = GestureTrace.fromByteArray(recorder.toByteArray());
+        assertEquals(14, trace.getEventCount());
+        assertEquals(duration, trace.getDurationMillis());
+
+        final CountingViews.Layout replayed = createLayout();
+        replayed.getCountingTarget().setNestedScrollingEnabled(false);
+        final GestureTraceReplayer.Result result = new GestureTraceReplayer(mClock).replay(replayed, trace);
+
+        assertEquals(14, result.getEventCount());
+        final int[] offsets = result.getOffsets();
+        assertTrue(offsets[12] > 0);
+        for (int i = 0; i < mLiveOffsets.size(); i++) {
+            assertEquals(mLiveOffsets.get(i).intValue(), offsets[i + 1]);
+        }
+        assertEquals(recorded.getCountingHeader().states, result.getStates());
+        assertEquals(recorded.getCurrentOffset(), result.getFinalOffset());
+        assertEquals(result.getEventCount(), result.getEventNanos().length);
+        assertTrue(result.getMaxEventNanos() <= result.getTotalEventNanos());
+    }
+
+    @Test
+    public void nestedTouchTraceAppliesPullOnce() throws IOException {
+        // 内容开启嵌套滑动，trace 中同时有触摸事件和它们产生的嵌套滑动
+        final CountingViews.Layout recorded = createLayout();
+        final GestureTraceRecorder recorder = new GestureTraceRecorder();
+        recordTouchPull(recorded, recorder);
+        final GestureTrace trace = GestureTrace.fromByteArray(recorder.toByteArray());
+        assertTrue(trace.getEventCount() > 14);
+        final int maxOffset = recorded.getCountingHeader().maxOffset;
+        assertTrue(maxOffset > 0);
+
+        final CountingViews.Layout replayed = createLayout();
+        final GestureTraceReplayer.Result result = new GestureTraceReplayer(mClock).replay(replayed, trace);
+
+        assertEquals(maxOffset, replayed.getCountingHeader().maxOffset);
+        assertEquals(mLiveOffsets.get(mLiveOffsets.size() - 1).intValue(), max(result.getOffsets()));
+        assertEquals(recorded.getCountingHeader().states, result.getStates());
+        assertEquals(recorded.getCurrentOffset(), result.getFinalOffset());
+    }
+
+    @Test
+    public void nestedTraceRoundTripsThroughStream() throws IOException {
+        final CountingViews.Layout recorded = createLayout();
+        final GestureTraceRecorder recorder = new GestureTraceRecorder();
+        recorded.setGestureTraceRecorder(recorder);
+        final CountingViews.Target target = recorded.getCountingTarget();
+        recorded.onStartNestedScroll(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        recorded.onNestedScrollAccepted(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        for (int i = 0; i < 20; i++) {
+            mRule.advance(FRAME_MS);
+            recorded.onNestedScroll(target, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        }
+        recorded.onNestedPreScroll(target, 0, 5, new int[2], ViewCompat.TYPE_TOUCH);
+        recorded.onNestedPreFling(target, 0, -2000);
+        recorded.onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+        mRule.advance(1000);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+        final GestureTrace trace = GestureTrace.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(25, trace.getEventCount());
+
+        final CountingViews.Layout replayed = createLayout();
+        final GestureTraceReplayer.Result result = new GestureTraceReplayer(mClock).replay(replayed, trace);
+        assertEquals(recorded.getCountingHeader().states, result.getStates());
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(result.getStates()));
+        assertEquals(CountingViews.HEADER_HEIGHT, result.getFinalOffset());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidTrace() throws IOException {
+        GestureTrace.fromByteArray(new byte[]{1, 2, 3, 4, 5, 6});
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedTrace() throws IOException {
+        final GestureTraceRecorder recorder = new GestureTraceRecorder();
+        recorder.recordNestedScroll(0, 0, 0, -300, ViewCompat.TYPE_TOUCH);
+        final byte[] data = recorder.toByteArray();
+        GestureTrace.fromByteArray(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test
+    public void stopsRecordingAtMaxSize() {
+        final GestureTraceRecorder recorder = new GestureTraceRecorder(256);
+        for (int i = 0; i < 100; i++) {
+            recorder.recordNestedScroll(0, 0, 0, -i, ViewCompat.TYPE_TOUCH);
+        }
+        assertTrue(recorder.isTruncated());
+        assertTrue(recorder.size() <= 256);
+        assertTrue(recorder.getEventCount() < 100);
+    }
+
+    private CountingViews.Layout createLayout() {
+        final CountingViews.Layout layout = mRule.newLayout();
+        layout.setKeepTargetFullHeight(true);
+        mRule.attach(layout);
+        layout.resetCounts();
+        return layout;
+    }
+
+    /**
+     * Records a pull of 12 moves with historical samples and a release.
+     *
+     * @return Time between the down and the up event.
+     */
+    private long recordTouchPull(CountingViews.Layout recorded, GestureTraceRecorder recorder) {
+        recorded.setGestureTraceRecorder(recorder);
+        final long downTime = SystemClock.uptimeMillis();
+        float y = 100;
+        touch(recorded, downTime, downTime, MotionEvent.ACTION_DOWN, y);
+        long time = downTime;
+        for (int i = 0; i < 12; i++) {
+            time += FRAME_MS;
+            y += 20;
+            // 带 historical 采样的 MOVE
+            final MotionEvent event = MotionEvent.obtain(downTime, time - FRAME_MS / 2,
+                    MotionEvent.ACTION_MOVE, TOUCH_X, y - 10, 0);
+            event.addBatch(time, TOUCH_X, y, 1f, 1f, 0);
+            mRule.advanceTo(time);
+            recorded.dispatchTouchEvent(event);
+            event.recycle();
+            mLiveOffsets.add(recorded.getCurrentOffset());
+        }
+        time += FRAME_MS;
+        touch(recorded, downTime, time, MotionEvent.ACTION_UP, y);
+        mRule.advanceTo(time + 1000);
+        recorded.setGestureTraceRecorder(null);
+        return time - downTime;
+    }
+
+    private void touch(PullRefreshLayout layout, long downTime, long eventTime, int action, float y) {
+        mRule.advanceTo(eventTime);
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, TOUCH_X, y, 0);
+        layout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private static int max(int[] values) {
+        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static PullRefreshLayout.State last(List<PullRefreshLayout.State> states) {
+        return states.isEmpty() ? null : states.get(states.size() - 1);
+    }
+}
@@ -0,0 +1,166 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that idle work only runs while {@link PullRefreshLayout} is idle.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class IdleWorkQueueTest {
+
+    private static final int FRAME_MS = LayoutTestRule.FRAME_MS;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private CountingViews.Layout mLayout;
+    private int mRunCount;
+
+    private final Runnable mWork = new Runnable() {
+        @Override
+        public void run() {
+            mRunCount++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mLayout = mRule.createLayout();
+    }
+
+    @Test
+    public void runsOnNextFrameWhenIdle() {
+        assertTrue(mLayout.isIdle());
+        mLayout.postIdleWork(mWork);
+        assertEquals(0, mRunCount);
+        advance(FRAME_MS);
+        assertEquals(1, mRunCount);
+    }
+
+    @Test
+    public void pausesDuringTouchGesture() {
+        final long downTime = SystemClock.uptimeMillis();
+        touch(downTime, MotionEvent.ACTION_DOWN);
+        assertFalse(mLayout.isIdle());
+        mLayout.postIdleWork(mWork);
+        advance(10 * FRAME_MS);
+        assertEquals(0, mRunCount);
+
+        touch(downTime, MotionEvent.ACTION_UP);
+        advance(FRAME_MS);
+        assertEquals(1, mRunCount);
+    }
+
+    @Test
+    public void pausesWhenNestedScrollStarts() {
+        mLayout.postIdleWork(mWork);
+        mLayout.postIdleWork(mWork);
+        final CountingViews.Target target = mLayout.getCountingTarget();
+        mLayout.onStartNestedScroll(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        mLayout.onNestedScrollAccepted(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        for (int i = 0; i < 10; i++) {
+            mLayout.onNestedScroll(target, 0, 0, 0, -10, ViewCompat.TYPE_TOUCH);
+            advance(FRAME_MS);
+        }
+        assertEquals(0, mRunCount);
+
+        // 松手后回弹动画结束才恢复
+        mLayout.onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+        advance(FRAME_MS);
+        assertEquals(0, mRunCount);
+        advance(1000);
+        assertEquals(0, mLayout.getCurrentOffset());
+        assertEquals(2, mRunCount);
+    }
+
+    @Test
+    public void resumesAfterLayoutDragReturnsToTop() {
+        // 拖拽由 layout 自己处理，松手后的 fling 结束时已经在 0
+        mLayout.getCountingTarget().setNestedScrollingEnabled(false);
+        mLayout.postIdleWork(mWork);
+        final long downTime = SystemClock.uptimeMillis();
+        long time = downTime;
+        float y = 100;
+        touch(downTime, time, MotionEvent.ACTION_DOWN, y);
+        for (int i = 0; i < 10; i++) {
+            time += FRAME_MS;
+            y += 20;
+            touch(downTime, time, MotionEvent.ACTION_MOVE, y);
+        }
+        assertTrue(mLayout.getCurrentOffset() > 0);
+        for (int i = 0; i < 20; i++) {
+            time += FRAME_MS;
+            y -= 20;
+            touch(downTime, time, MotionEvent.ACTION_MOVE, y);
+        }
+        assertEquals(0, mLayout.getCurrentOffset());
+        // 停留后松手，松手速度为 0
+        time += 200;
+        touch(downTime, time, MotionEvent.ACTION_MOVE, y);
+        touch(downTime, time, MotionEvent.ACTION_UP, y);
+        assertEquals(0, mRunCount);
+
+        advance(1000);
+        assertTrue(mLayout.isIdle());
+        assertEquals(1, mRunCount);
+        final List<PullRefreshLayout.State> states = mLayout.getCountingHeader().states;
+        assertEquals(PullRefreshLayout.State.NONE, states.get(states.size() - 1));
+    }
+
+    @Test
+    public void removedWorkDoesNotRun() {
+        mLayout.postIdleWork(mWork);
+        mLayout.removeIdleWork(mWork);
+        advance(10 * FRAME_MS);
+        assertEquals(0, mRunCount);
+    }
+
+    @Test
+    public void stopsDrainingWhenWorkStartsGesture() {
+        mLayout.postIdleWork(new Runnable() {
+            @Override
+            public void run() {
+                mRunCount++;
+                mLayout.setRefreshing(true, true);
+            }
+        });
+        mLayout.postIdleWork(mWork);
+        advance(FRAME_MS);
+        assertEquals(1, mRunCount);
+        assertFalse(mLayout.isIdle());
+
+        // 刷新动画结束后继续执行
+        advance(1000);
+        assertEquals(2, mRunCount);
+    }
+
+    private void touch(long downTime, int action) {
+        touch(downTime, SystemClock.uptimeMillis(), action, 100);
+    }
+
+    private void touch(long downTime, long eventTime, int action, float y) {
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, 100, y, 0);
+        mLayout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private void advance(long millis) {
+        mRule.advance(millis);
+    }
+}
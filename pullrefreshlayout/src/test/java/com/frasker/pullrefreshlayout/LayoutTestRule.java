@@ -0,0 +1,75 @@
+package com.frasker.pullrefreshlayout;
+
+import android.app.Activity;
+import android.view.ViewGroup;
+
+import org.junit.rules.ExternalResource;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.util.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs frame callbacks one frame after they are posted and attaches
+ * {@link CountingViews.Layout}s to their own activity, so animations advance
+ * frame by frame with the foreground scheduler.
+ */
+final class LayoutTestRule extends ExternalResource {
+
+    static final int FRAME_MS = 16;
+
+    private Scheduler mScheduler;
+
+    @Override
+    protected void before() {
+        ShadowChoreographer.setPostFrameCallbackDelay(FRAME_MS);
+        mScheduler = Robolectric.getForegroundThreadScheduler();
+    }
+
+    @Override
+    protected void after() {
+        ShadowChoreographer.setPostFrameCallbackDelay(0);
+    }
+
+    Scheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * @return A layout in a new activity, not attached yet so it can be set up
+     * before its first layout pass.
+     */
+    CountingViews.Layout newLayout() {
+        final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        return CountingViews.createLayout(activity);
+    }
+
+    /**
+     * Makes {@code layout} the content of its activity and runs the first frames.
+     */
+    CountingViews.Layout attach(CountingViews.Layout layout) {
+        ((Activity) layout.getContext()).setContentView(layout, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        runFrames(2);
+        return layout;
+    }
+
+    CountingViews.Layout createLayout() {
+        return attach(newLayout());
+    }
+
+    void advance(long millis) {
+        mScheduler.advanceBy(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void advanceTo(long uptimeMillis) {
+        mScheduler.advanceTo(uptimeMillis);
+    }
+
+    void runFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            advance(FRAME_MS);
+        }
+    }
+}
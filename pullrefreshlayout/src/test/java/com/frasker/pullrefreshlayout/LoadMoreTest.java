@@ -0,0 +1,137 @@
+package com.frasker.pullrefreshlayout;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a target without nested scrolling loads more once it is
+ * scrolled to its end.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class LoadMoreTest {
+
+    private static final int ITEM_HEIGHT = 100;
+    private static final int ITEM_COUNT = 30;
+    private static final float TOUCH_X = 100;
+    private static final int STEP = 40;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private CountingViews.Layout mLayout;
+    private ListView mListView;
+    private int mLoadMoreCount;
+
+    @Before
+    public void setUp() {
+        final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        mLayout = new CountingViews.Layout(activity);
+        mListView = new ListView(activity);
+        // ListView 不会通过嵌套滑动通知 layout
+        mListView.setNestedScrollingEnabled(false);
+        mListView.setAdapter(new Adapter());
+        mLayout.addView(mListView, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.onFinishInflate();
+        mLayout.setLoadMoreEnabled(true);
+        mLayout.setOnLoadMoreListener(new PullRefreshLayout.OnLoadMoreListener() {
+            @Override
+            public void onLoadMore() {
+                mLoadMoreCount++;
+            }
+        });
+        mRule.attach(mLayout);
+    }
+
+    @Test
+    public void touchScrollToEndLoadsMoreOnce() {
+        // 总共推动整个列表的高度，到底部之后还会再推几次
+        final int distance = ITEM_COUNT * ITEM_HEIGHT;
+        long downTime = SystemClock.uptimeMillis();
+        float y = mLayout.getHeight() - 10;
+        touch(downTime, MotionEvent.ACTION_DOWN, y);
+        for (int moved = 0; moved < distance; moved += STEP) {
+            y -= STEP;
+            if (y < 10) {
+                // 手指到了顶部，抬起后从底部重新开始
+                touch(downTime, MotionEvent.ACTION_UP, y);
+                y = mLayout.getHeight() - 10;
+                downTime = SystemClock.uptimeMillis();
+                touch(downTime, MotionEvent.ACTION_DOWN, y);
+                continue;
+            }
+            touch(downTime, MotionEvent.ACTION_MOVE, y);
+        }
+        touch(downTime, MotionEvent.ACTION_UP, y);
+
+        assertFalse(mListView.canScrollVertically(1));
+        assertEquals(1, mLoadMoreCount);
+        assertTrue(mLayout.isLoadingMore());
+    }
+
+    @Test
+    public void pullAtTopDoesNotLoadMore() {
+        final long downTime = SystemClock.uptimeMillis();
+        float y = 100;
+        touch(downTime, MotionEvent.ACTION_DOWN, y);
+        for (int i = 0; i < 10; i++) {
+            y += STEP;
+            touch(downTime, MotionEvent.ACTION_MOVE, y);
+        }
+        touch(downTime, MotionEvent.ACTION_UP, y);
+        assertEquals(0, mLoadMoreCount);
+    }
+
+    private void touch(long downTime, int action, float y) {
+        mRule.advance(LayoutTestRule.FRAME_MS);
+        final MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, TOUCH_X, y, 0);
+        mLayout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private static final class Adapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            return ITEM_COUNT;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            if (convertView != null) {
+                return convertView;
+            }
+            final View item = new View(parent.getContext());
+            item.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+            return item;
+        }
+    }
+}
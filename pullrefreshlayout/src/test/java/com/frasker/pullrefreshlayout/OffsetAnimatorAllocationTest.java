@@ -0,0 +1,129 @@
+package com.frasker.pullrefreshlayout;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.util.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a running {@link OffsetAnimator} allocates nothing per frame
+ * beyond what posting a Choreographer frame callback costs by itself.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class OffsetAnimatorAllocationTest {
+
+    private static final int FRAME_MS = 16;
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int FRAMES = 60;
+    // 每帧允许的误差，每帧装箱一个 Integer 就会超出
+    private static final int SLACK_BYTES_PER_FRAME = 4;
+
+    private Scheduler mScheduler;
+    private OffsetAnimator mAnimator;
+    private int mLastValue;
+    private int mUpdateCount;
+
+    private final OffsetAnimator.Listener mListener = new OffsetAnimator.Listener() {
+        @Override
+        public void onAnimationUpdate(int mode, int value) {
+            mLastValue = value;
+            mUpdateCount++;
+        }
+
+        @Override
+        public void onAnimationEnd(int mode, boolean canceled) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Allocations.isSupported());
+        ShadowChoreographer.setPostFrameCallbackDelay(FRAME_MS);
+        mScheduler = Robolectric.getForegroundThreadScheduler();
+        mAnimator = new OffsetAnimator(new View(RuntimeEnvironment.application), mListener);
+        mAnimator.setInterpolator(new DecelerateInterpolator(2f));
+    }
+
+    @After
+    public void tearDown() {
+        if (mAnimator != null) {
+            mAnimator.cancel();
+        }
+        ShadowChoreographer.setPostFrameCallbackDelay(0);
+    }
+
+    @Test
+    public void tweenFramesDoNotAllocate() {
+        final long baseline = measureBaseline();
+        mAnimator.start(0, 100000, 60000);
+        assertNoAllocationPerFrame(baseline);
+    }
+
+    @Test
+    public void springFramesDoNotAllocate() {
+        final long baseline = measureBaseline();
+        mAnimator.spring(0, 100000, 0, 1f, 1f);
+        assertNoAllocationPerFrame(baseline);
+    }
+
+    @Test
+    public void flingFramesDoNotAllocate() {
+        final long baseline = measureBaseline();
+        assertTrue(mAnimator.fling(50000, 0, Integer.MAX_VALUE));
+        assertNoAllocationPerFrame(baseline);
+    }
+
+    private void assertNoAllocationPerFrame(long baseline) {
+        runFrames(WARM_UP_FRAMES);
+        final int updates = mUpdateCount;
+        final long start = Allocations.allocatedBytes();
+        runFrames(FRAMES);
+        final long allocated = Allocations.allocatedBytes() - start;
+        assertTrue("animation ended early", mAnimator.isRunning());
+        assertTrue(mUpdateCount - updates >= FRAMES - 1);
+        assertTrue(mLastValue > 0);
+        assertTrue("allocated " + allocated + " bytes in " + FRAMES + " frames, baseline " + baseline,
+                allocated <= baseline + FRAMES * SLACK_BYTES_PER_FRAME);
+    }
+
+    /**
+     * @return Bytes allocated by the frame scheduling alone over {@link #FRAMES} frames.
+     */
+    private long measureBaseline() {
+        final Choreographer.FrameCallback callback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        };
+        Choreographer.getInstance().postFrameCallback(callback);
+        runFrames(WARM_UP_FRAMES);
+        final long start = Allocations.allocatedBytes();
+        runFrames(FRAMES);
+        final long allocated = Allocations.allocatedBytes() - start;
+        Choreographer.getInstance().removeFrameCallback(callback);
+        return allocated;
+    }
+
+    private void runFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            mScheduler.advanceBy(FRAME_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
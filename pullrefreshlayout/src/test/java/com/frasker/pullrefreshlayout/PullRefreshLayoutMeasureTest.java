@@ -0,0 +1,69 @@
+package com.frasker.pullrefreshlayout;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the measure passes {@link PullRefreshLayout} makes its header do.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class PullRefreshLayoutMeasureTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private CountingViews.Layout mLayout;
+    private CountingViews.Header mHeader;
+    private CountingViews.Target mTarget;
+
+    @Before
+    public void setUp() {
+        mLayout = CountingViews.createLayout(RuntimeEnvironment.application);
+        mHeader = mLayout.getCountingHeader();
+        mTarget = mLayout.getCountingTarget();
+        measureAndLayout(WIDTH, HEIGHT);
+        mLayout.resetCounts();
+    }
+
+    @Test
+    public void fixedHeaderHeightMeasuresHeaderOnce() {
+        mLayout.setRefreshingHeight(CountingViews.HEADER_HEIGHT);
+        mLayout.setFixedHeaderHeight(true);
+        measureAndLayout(WIDTH, HEIGHT);
+        assertEquals(1, mHeader.measureCount);
+        assertEquals(CountingViews.HEADER_HEIGHT, mHeader.getMeasuredHeight());
+
+        mLayout.resetCounts();
+        measureAndLayout(WIDTH, HEIGHT - 100);
+        measureAndLayout(WIDTH, HEIGHT - 200);
+        assertEquals(0, mHeader.measureCount);
+        assertEquals(2, mTarget.measureCount);
+    }
+
+    @Test
+    public void fixedHeaderIsMeasuredWhenItRequestsLayout() {
+        mLayout.setRefreshingHeight(CountingViews.HEADER_HEIGHT);
+        mLayout.setFixedHeaderHeight(true);
+        measureAndLayout(WIDTH, HEIGHT);
+        mLayout.resetCounts();
+
+        mHeader.requestLayout();
+        measureAndLayout(WIDTH, HEIGHT - 100);
+        assertEquals(1, mHeader.measureCount);
+    }
+
+    private void measureAndLayout(int width, int height) {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, width, height);
+    }
+}
@@ -0,0 +1,574 @@
+package com.frasker.pullrefreshlayout;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives pull, release, fling and nested scroll scenarios through
+ * {@link PullRefreshLayout} with a RecyclerView target and checks the budgets
+ * of the hot path: no measure/layout pass during a gesture, one header
+ * callback per event and a bounded allocation per event. Every scenario runs
+ * in the default configuration and with {@code keepTargetFullHeight}.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 26)
+public class PullRefreshLayoutPerformanceTest {
+
+    private static final int FRAME_MS = LayoutTestRule.FRAME_MS;
+    private static final int SETTLE_FRAMES = 120;
+    private static final float TOUCH_X = 100;
+    private static final float TOUCH_Y = 100;
+    // 超出 ReferenceDragView 的部分，Robolectric 中 MotionEvent 和 VelocityTracker shadow 自身的开销不计入
+    private static final int MAX_BYTES_PER_MOVE = 32;
+    private static final int MAX_BYTES_PER_NESTED_SCROLL = 64;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private final boolean mKeepTargetFullHeight;
+    private Scheduler mScheduler;
+    private ReferenceDragView mReference;
+    private CountingViews.Layout mLayout;
+    private CountingViews.Header mHeader;
+    private CountingViews.Target mTarget;
+    private int mRefreshCount;
+    private long mDownTime;
+    private long mEventTime;
+    private float mLastY;
+    private final int[] mConsumed = new int[2];
+
+    public PullRefreshLayoutPerformanceTest(boolean keepTargetFullHeight) {
+        mKeepTargetFullHeight = keepTargetFullHeight;
+    }
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "keepTargetFullHeight={0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{false}, {true}});
+    }
+
+    @Before
+    public void setUp() {
+        mScheduler = mRule.getScheduler();
+        mLayout = mRule.newLayout();
+        mLayout.setKeepTargetFullHeight(mKeepTargetFullHeight);
+        mLayout.setOnRefreshListener(new PullRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                mRefreshCount++;
+            }
+        });
+        mRule.attach(mLayout);
+        mHeader = mLayout.getCountingHeader();
+        mTarget = mLayout.getCountingTarget();
+        assertTrue("target was not laid out", mTarget.getHeight() > 0);
+        mReference = new ReferenceDragView(mLayout.getContext());
+        mLayout.resetCounts();
+    }
+
+    @Test
+    public void pullAndReleaseBelowTrigger() {
+        // 拖拽由 PullRefreshLayout 的 onTouchEvent 处理
+        mTarget.setNestedScrollingEnabled(false);
+        touchDown();
+        final int moves = 4;
+        final long allocated = drag(moves, 10);
+        release();
+        runFrames(SETTLE_FRAMES);
+
+        assertTrue(mHeader.maxOffset > 0);
+        assertEquals(0, mHeader.lastOffset);
+        assertNoLayoutPasses();
+        assertEquals(1, mHeader.readyCount);
+        assertEquals(1, mHeader.resetCount);
+        assertEquals(Arrays.asList(PullRefreshLayout.State.PULL_TO_REFRESH, PullRefreshLayout.State.NONE),
+                mHeader.states);
+        assertEquals(0, mRefreshCount);
+        assertAllocationBudget(allocated, moves * MAX_BYTES_PER_MOVE);
+    }
+
+    @Test
+    public void pullPastTriggerRefreshesWithoutLayoutPasses() {
+        mTarget.setNestedScrollingEnabled(false);
+        touchDown();
+        final int moves = 20;
+        final long allocated = drag(moves, 20);
+        // 每个事件只回调一次 offset
+        assertTrue(mHeader.offsetChangedCount <= moves);
+        release();
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(1, mRefreshCount);
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(mHeader.states));
+        assertEquals(CountingViews.HEADER_HEIGHT, mHeader.lastOffset);
+
+        mLayout.setRefreshComplete(true);
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(0, mHeader.lastOffset);
+        assertEquals(PullRefreshLayout.State.NONE, last(mHeader.states));
+        assertInOrder(mHeader.states,
+                PullRefreshLayout.State.RELEASE_TO_REFRESH,
+                PullRefreshLayout.State.REFRESH_RELEASED,
+                PullRefreshLayout.State.REFRESHING,
+                PullRefreshLayout.State.REFRESH_SUCCESS,
+                PullRefreshLayout.State.NONE);
+        assertNoLayoutPasses();
+        assertEquals(1, mHeader.readyCount);
+        assertEquals(1, mHeader.resetCount);
+        assertAllocationBudget(allocated, moves * MAX_BYTES_PER_MOVE);
+    }
+
+    @Test
+    public void fastReleaseFlingsHeaderBack() {
+        final int[] fling = new int[2];
+        mTarget.setNestedScrollingEnabled(false);
+        touchDown();
+        final int moves = 9;
+        final long allocated = drag(6, 20) + drag(3, -30);
+        assertTrue(mLayout.getCurrentOffset() > 0);
+        mLayout.setOnPullMetricsListener(new PullRefreshLayout.OnPullMetricsListener() {
+            @Override
+            public void onPullMetrics(PullRefreshLayout layout, PullRefreshMetrics metrics) {
+                if (metrics.getPhase() == PullRefreshMetrics.Phase.FLING) {
+                    fling[0] = metrics.getFrameCount();
+                    fling[1] = metrics.getHeaderCallbackCount();
+                }
+            }
+        });
+        // 快速上推后立即松手，header 跟随松手速度 fling 回去
+        dispatch(MotionEvent.ACTION_UP, mLastY);
+        for (int i = 0; i < SETTLE_FRAMES; i++) {
+            runFrames(1);
+            assertTrue("offset " + mLayout.getCurrentOffset(), mLayout.getCurrentOffset() >= 0);
+        }
+
+        assertTrue("release did not fling", fling[0] > 0);
+        // 每帧最多回调一次 header
+        assertTrue(fling[1] + " header callbacks in " + fling[0] + " frames", fling[1] <= fling[0] + 1);
+        assertEquals(0, mHeader.lastOffset);
+        assertNoLayoutPasses();
+        assertEquals(1, mHeader.readyCount);
+        assertEquals(1, mHeader.resetCount);
+        assertEquals(Arrays.asList(PullRefreshLayout.State.PULL_TO_REFRESH, PullRefreshLayout.State.NONE),
+                mHeader.states);
+        assertEquals(0, mRefreshCount);
+        assertAllocationBudget(allocated, moves * MAX_BYTES_PER_MOVE);
+    }
+
+    @Test
+    public void freshDataSkipsSpeculativeRefresh() {
+        final int[] prepareCount = new int[1];
+        mLayout.setOnPrepareRefreshListener(new PullRefreshLayout.OnPrepareRefreshListener() {
+            @Override
+            public void onPrepareRefresh(CancellationSignal signal) {
+                prepareCount[0]++;
+            }
+        });
+        mLayout.setRefreshFreshnessTtl(60000);
+        mTarget.setNestedScrollingEnabled(false);
+        touchDown();
+        drag(20, 20);
+        // 一帧内分发的事件也能算出速度，松手前已经提前开始刷新
+        assertEquals(1, prepareCount[0]);
+        release();
+        runFrames(SETTLE_FRAMES);
+        assertEquals(1, mRefreshCount);
+        mLayout.setRefreshComplete(true);
+        runFrames(SETTLE_FRAMES);
+
+        // 数据还新鲜，再次下拉不会真正刷新，也不提前请求
+        touchDown();
+        drag(20, 20);
+        release();
+        runFrames(SETTLE_FRAMES);
+        assertEquals(1, prepareCount[0]);
+        assertEquals(1, mRefreshCount);
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void prepareSignalIsCanceledWhenRefreshStops() {
+        final CancellationSignal[] signal = new CancellationSignal[1];
+        mLayout.setOnPrepareRefreshListener(new PullRefreshLayout.OnPrepareRefreshListener() {
+            @Override
+            public void onPrepareRefresh(CancellationSignal s) {
+                signal[0] = s;
+            }
+        });
+        pullPastTriggerAndRelease();
+        runFrames(SETTLE_FRAMES);
+        assertEquals(1, mRefreshCount);
+        assertFalse(signal[0].isCanceled());
+
+        mLayout.setRefreshing(false, true);
+        assertTrue(signal[0].isCanceled());
+        runFrames(SETTLE_FRAMES);
+    }
+
+    @Test
+    public void layersAreRestoredAfterFlingBackToTop() {
+        mLayout.hardwareAccelerated = true;
+        mLayout.setHardwareLayers(true);
+        mTarget.setNestedScrollingEnabled(false);
+        touchDown();
+        drag(5, 20);
+        assertEquals(View.LAYER_TYPE_HARDWARE, mHeader.getLayerType());
+        assertEquals(View.LAYER_TYPE_HARDWARE, mTarget.getLayerType());
+        // 拖回顶部后松手，fling 结束时已经在 0，不会再开始回弹动画
+        drag(10, -20);
+        assertEquals(0, mLayout.getCurrentOffset());
+        release();
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(View.LAYER_TYPE_NONE, mHeader.getLayerType());
+        assertEquals(View.LAYER_TYPE_NONE, mTarget.getLayerType());
+        assertEquals(PullRefreshLayout.State.NONE, last(mHeader.states));
+        assertEquals(1, mHeader.resetCount);
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void legacyDragRateOverrideIsStillUsed() {
+        // 没有重写废弃方法时不取整
+        assertEquals(10.4f, mLayout.calculateOffsetByDragRate(10.4f, 0f), 0.001f);
+        final PullRefreshLayout legacy = new PullRefreshLayout(mLayout.getContext()) {
+            @Override
+            protected int calculateOffsetByDragRate(int dy) {
+                return dy * 2;
+            }
+        };
+        assertEquals(20f, legacy.calculateOffsetByDragRate(10.4f, 0f), 0f);
+    }
+
+    @Test
+    public void detachDuringReleaseDoesNotStartRefresh() {
+        final int[] asyncCount = new int[1];
+        mLayout.setAsyncRefreshListener(new PullRefreshLayout.AsyncRefreshListener() {
+            @Override
+            public RefreshHandle onRefresh(CancellationSignal signal) {
+                asyncCount[0]++;
+                return new RefreshHandle();
+            }
+        });
+        pullPastTriggerAndRelease();
+        assertEquals(PullRefreshLayout.State.REFRESH_RELEASED, last(mHeader.states));
+
+        ((ViewGroup) mLayout.getParent()).removeView(mLayout);
+        runFrames(SETTLE_FRAMES);
+        assertEquals(0, mRefreshCount);
+        assertEquals(0, asyncCount[0]);
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(0, mLayout.getCurrentOffset());
+    }
+
+    @Test
+    public void disableDuringReleaseDoesNotStartRefresh() {
+        pullPastTriggerAndRelease();
+        mLayout.setEnabled(false);
+        runFrames(SETTLE_FRAMES);
+        assertEquals(0, mRefreshCount);
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(PullRefreshLayout.State.NONE, last(mHeader.states));
+    }
+
+    @Test
+    public void nestedScrollPullAndRelease() {
+        startNestedScroll();
+        final int scrolls = 10;
+        final int preScrolls = 2;
+        mScheduler.pause();
+        final long start = Allocations.allocatedBytes();
+        for (int i = 0; i < scrolls; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -10, ViewCompat.TYPE_TOUCH);
+        }
+        for (int i = 0; i < preScrolls; i++) {
+            mConsumed[0] = 0;
+            mConsumed[1] = 0;
+            mLayout.onNestedPreScroll(mTarget, 0, 5, mConsumed, ViewCompat.TYPE_TOUCH);
+        }
+        final long allocated = Allocations.allocatedBytes() - start;
+        mScheduler.unPause();
+        assertEquals(5, mConsumed[1]);
+        assertTrue(mHeader.offsetChangedCount <= scrolls + preScrolls);
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        runFrames(SETTLE_FRAMES);
+
+        assertTrue(mHeader.maxOffset > 0);
+        assertEquals(0, mHeader.lastOffset);
+        assertNoLayoutPasses();
+        assertEquals(1, mHeader.readyCount);
+        assertEquals(1, mHeader.resetCount);
+        assertEquals(Arrays.asList(PullRefreshLayout.State.PULL_TO_REFRESH, PullRefreshLayout.State.NONE),
+                mHeader.states);
+        assertAllocationBudget(allocated, (scrolls + preScrolls) * MAX_BYTES_PER_NESTED_SCROLL);
+    }
+
+    @Test
+    public void nestedFlingSettlesWithSpring() {
+        mLayout.setSpringSettle(true);
+        startNestedScroll();
+        for (int i = 0; i < 20; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        }
+        mLayout.onNestedPreFling(mTarget, 0, -2000);
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(1, mRefreshCount);
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(mHeader.states));
+        assertEquals(CountingViews.HEADER_HEIGHT, mHeader.lastOffset);
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void springNeverOvershootsTotalDragDistance() {
+        final int total = 2 * CountingViews.HEADER_HEIGHT;
+        mLayout.setTotalDragDistance(total);
+        mLayout.setSpringSettle(true);
+        startNestedScroll();
+        for (int i = 0; i < 40; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        }
+        // 向下的速度很大，弹簧不能把 offset 带过最大下拉距离
+        mLayout.onNestedPreFling(mTarget, 0, -20000);
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        for (int i = 0; i < SETTLE_FRAMES; i++) {
+            runFrames(1);
+            assertTrue("offset " + mLayout.getCurrentOffset(), mLayout.getCurrentOffset() <= total);
+        }
+        assertEquals(CountingViews.HEADER_HEIGHT, mLayout.getCurrentOffset());
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void pinnedContentNeverMovesTarget() {
+        mLayout.setIsPinContent(true);
+        final int targetTop = mTarget.getTop();
+        final int headerTop = mHeader.getTop();
+        startNestedScroll();
+        for (int i = 0; i < 20; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+            assertEquals(targetTop, mTarget.getTop());
+        }
+        assertEquals(headerTop + mLayout.getCurrentOffset(), mHeader.getTop());
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(1, mRefreshCount);
+        assertEquals(CountingViews.HEADER_HEIGHT, mHeader.lastOffset);
+        assertEquals(targetTop, mTarget.getTop());
+        assertEquals(headerTop + CountingViews.HEADER_HEIGHT, mHeader.getTop());
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void targetOverScrollIsSuppressedWhilePulled() {
+        mTarget.setOverScrollMode(View.OVER_SCROLL_IF_CONTENT_SCROLLS);
+        startNestedScroll();
+        mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        assertEquals(View.OVER_SCROLL_NEVER, mTarget.getOverScrollMode());
+        mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        // 上推回到 0 后恢复
+        mLayout.onNestedPreScroll(mTarget, 0, 1000, new int[2], ViewCompat.TYPE_TOUCH);
+        assertEquals(0, mLayout.getCurrentOffset());
+        assertEquals(View.OVER_SCROLL_IF_CONTENT_SCROLLS, mTarget.getOverScrollMode());
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        runFrames(SETTLE_FRAMES);
+        assertNoLayoutPasses();
+    }
+
+    @Test
+    public void coalescedHeaderCallbacksAreDeliveredOncePerFrame() {
+        mLayout.setCoalesceHeaderCallbacks(true);
+        startNestedScroll();
+        mScheduler.pause();
+        for (int i = 0; i < 20; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        }
+        assertEquals(1, mHeader.readyCount);
+        assertEquals(0, mHeader.offsetChangedCount);
+        assertTrue(mHeader.states.isEmpty());
+
+        mRule.runFrames(1);
+        assertEquals(1, mHeader.offsetChangedCount);
+        assertEquals(Arrays.asList(PullRefreshLayout.State.PULL_TO_REFRESH, PullRefreshLayout.State.RELEASE_TO_REFRESH),
+                mHeader.states);
+        mScheduler.unPause();
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+        runFrames(SETTLE_FRAMES);
+        assertNoLayoutPasses();
+    }
+
+    private void touchDown() {
+        mDownTime = SystemClock.uptimeMillis();
+        mEventTime = mDownTime;
+        mLastY = TOUCH_Y;
+        dispatch(MotionEvent.ACTION_DOWN, mLastY);
+        // 越过 touch slop，开始拖拽
+        mEventTime += FRAME_MS;
+        mLastY += 20;
+        dispatch(MotionEvent.ACTION_MOVE, mLastY);
+    }
+
+    /**
+     * Dispatches {@code moves} move events while frames are paused.
+     *
+     * @return Bytes allocated while dispatching them beyond what dispatching
+     * the same events to {@link ReferenceDragView} allocates.
+     */
+    private long drag(int moves, float step) {
+        final MotionEvent[] events = new MotionEvent[moves];
+        for (int i = 0; i < moves; i++) {
+            mEventTime += FRAME_MS;
+            mLastY += step;
+            events[i] = MotionEvent.obtain(mDownTime, mEventTime, MotionEvent.ACTION_MOVE, TOUCH_X, mLastY, 0);
+        }
+        // 拖拽过程中不执行遍历和帧回调，只统计事件分发本身
+        mScheduler.pause();
+        // 同样的事件对象先交给参照 view，两边 shadow 的开销相同
+        final long referenceStart = Allocations.allocatedBytes();
+        for (MotionEvent event : events) {
+            mReference.dispatchTouchEvent(event);
+        }
+        final long reference = Allocations.allocatedBytes() - referenceStart;
+        final long start = Allocations.allocatedBytes();
+        for (MotionEvent event : events) {
+            mLayout.dispatchTouchEvent(event);
+        }
+        final long allocated = Allocations.allocatedBytes() - start - reference;
+        mScheduler.unPause();
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+        return allocated;
+    }
+
+    private void release() {
+        // 停留一段时间再松手，松手速度为 0
+        mEventTime += 200;
+        dispatch(MotionEvent.ACTION_MOVE, mLastY);
+        dispatch(MotionEvent.ACTION_UP, mLastY);
+    }
+
+    private void dispatch(int action, float y) {
+        final MotionEvent event = MotionEvent.obtain(mDownTime, mEventTime, action, TOUCH_X, y, 0);
+        mLayout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private void pullPastTriggerAndRelease() {
+        startNestedScroll();
+        for (int i = 0; i < 20; i++) {
+            mLayout.onNestedScroll(mTarget, 0, 0, 0, -20, ViewCompat.TYPE_TOUCH);
+        }
+        mLayout.onStopNestedScroll(mTarget, ViewCompat.TYPE_TOUCH);
+    }
+
+    private void startNestedScroll() {
+        assertTrue(mLayout.onStartNestedScroll(mTarget, mTarget, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH));
+        mLayout.onNestedScrollAccepted(mTarget, mTarget, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+    }
+
+    private void runFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            mRule.runFrames(1);
+        }
+    }
+
+    private void assertNoLayoutPasses() {
+        assertEquals("requestLayout", 0, mLayout.requestLayoutCount);
+        assertEquals("target measure", 0, mTarget.measureCount);
+        assertEquals("target layout", 0, mTarget.layoutCount);
+        assertEquals("header measure", 0, mHeader.measureCount);
+        assertEquals("header layout", 0, mHeader.layoutCount);
+    }
+
+    private static void assertAllocationBudget(long allocated, long budget) {
+        if (Allocations.isSupported()) {
+            assertTrue("allocated " + allocated + " bytes, budget " + budget, allocated <= budget);
+        }
+    }
+
+    private static void assertInOrder(List<PullRefreshLayout.State> states, PullRefreshLayout.State... expected) {
+        int index = 0;
+        for (PullRefreshLayout.State state : states) {
+            if (index < expected.length && state == expected[index]) {
+                index++;
+            }
+        }
+        assertEquals("states " + states, expected.length, index);
+    }
+
+    private static PullRefreshLayout.State last(List<PullRefreshLayout.State> states) {
+        return states.isEmpty() ? null : states.get(states.size() - 1);
+    }
+
+    /**
+     * Reads a MOVE the way any dragging view does: the pointer, its history
+     * and the event time, and tracks the velocity. What Robolectric's
+     * MotionEvent and VelocityTracker shadows allocate for that is not
+     * charged to the layout.
+     */
+    private static final class ReferenceDragView extends FrameLayout {
+
+        private final VelocityTracker mVelocityTracker = VelocityTracker.obtain();
+        private long mLastEventTime;
+        private float mLastY;
+
+        ReferenceDragView(Context context) {
+            super(context);
+            // 第一次使用时的初始化不计入参照
+            final MotionEvent event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_MOVE, TOUCH_X, TOUCH_Y, 0);
+            dispatchTouchEvent(event);
+            event.recycle();
+            mVelocityTracker.clear();
+        }
+
+        @Override
+        public boolean dispatchTouchEvent(MotionEvent ev) {
+            mLastEventTime = ev.getEventTime();
+            final int action = ev.getActionMasked();
+            return super.dispatchTouchEvent(ev) && action == MotionEvent.ACTION_MOVE;
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent ev) {
+            if (ev.getActionMasked() != MotionEvent.ACTION_MOVE) {
+                return false;
+            }
+            final int index = ev.findPointerIndex(0);
+            float y = mLastY;
+            final int historySize = ev.getHistorySize();
+            for (int h = 0; h < historySize; h++) {
+                y = ev.getHistoricalY(index, h);
+            }
+            mLastY = Math.max(y, ev.getY(index));
+            mLastEventTime = ev.getEventTime();
+            mVelocityTracker.addMovement(ev);
+            return true;
+        }
+    }
+}
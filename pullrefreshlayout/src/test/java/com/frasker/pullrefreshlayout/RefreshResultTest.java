@@ -0,0 +1,235 @@
+package com.frasker.pullrefreshlayout;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks in which frame window the diffed refresh results are applied.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RefreshResultTest {
+
+    private static final int FRAME_MS = LayoutTestRule.FRAME_MS;
+    private static final int ANIMATION_MS = 1000;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private CountingViews.Layout mLayout;
+    private ListAdapter mAdapter;
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private PullRefreshLayout.State mAppliedState;
+    private int mApplyCount;
+
+    // 测试中手动执行后台任务，模拟计算耗时
+    private final Executor mExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mLayout = mRule.newLayout();
+        mAdapter = new ListAdapter(Arrays.asList("a", "b", "c"));
+        mLayout.getCountingTarget().setAdapter(mAdapter);
+        mLayout.setRefreshResultExecutor(mExecutor);
+        mRule.attach(mLayout);
+        mLayout.setRefreshing(true, false);
+        advance(ANIMATION_MS);
+    }
+
+    @Test
+    public void appliesWhileSuccessIsShowing() {
+        mLayout.setRefreshSuccessShowDuration(500);
+        submit(Arrays.asList("a", "b", "c", "d"));
+        runTasks();
+        advance(FRAME_MS);
+
+        assertEquals(1, mApplyCount);
+        assertEquals(PullRefreshLayout.State.REFRESH_SUCCESS, mAppliedState);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), mAdapter.mItems);
+        assertEquals(1, mAdapter.mInserted);
+    }
+
+    @Test
+    public void appliesAfterCollapseWhenSuccessIsAboutToEnd() {
+        mLayout.setRefreshSuccessShowDuration(0);
+        submit(Arrays.asList("b", "c"));
+        advance(FRAME_MS);
+        // 计算完成前一直在刷新中
+        assertEquals(PullRefreshLayout.State.REFRESHING, last());
+        // 计算完成时成功状态的展示时间不足一帧
+        runTasks();
+        advance(FRAME_MS);
+        assertEquals(0, mApplyCount);
+
+        advance(ANIMATION_MS);
+        assertEquals(1, mApplyCount);
+        assertEquals(PullRefreshLayout.State.NONE, mAppliedState);
+        assertEquals(0, mLayout.getCurrentOffset());
+        assertEquals(Arrays.asList("b", "c"), mAdapter.mItems);
+        assertEquals(1, mAdapter.mRemoved);
+    }
+
+    @Test
+    public void failedDiffCompletesAsFailure() {
+        mLayout.setRefreshSuccessShowDuration(500);
+        mLayout.setRefreshComplete(Arrays.asList("x"), new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                throw new IllegalStateException("broken callback");
+            }
+
+            @Override
+            public int getNewListSize() {
+                return 1;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return false;
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return false;
+            }
+        }, new PullRefreshLayout.OnRefreshResultListener<String>() {
+            @Override
+            public void onRefreshResult(List<String> list, DiffUtil.DiffResult diffResult) {
+                mApplyCount++;
+            }
+        });
+        runTasks();
+        advance(FRAME_MS);
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(PullRefreshLayout.State.REFRESH_FAILURE, last());
+
+        advance(ANIMATION_MS);
+        assertEquals(0, mApplyCount);
+        assertEquals(0, mLayout.getCurrentOffset());
+        assertEquals(Arrays.asList("a", "b", "c"), mAdapter.mItems);
+    }
+
+    @Test
+    public void newResultSupersedesOneStillComputing() {
+        mLayout.setRefreshSuccessShowDuration(500);
+        submit(Arrays.asList("x"));
+        submit(Arrays.asList("a", "b", "c", "d", "e"));
+        runTasks();
+        advance(ANIMATION_MS);
+
+        assertEquals(1, mApplyCount);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), mAdapter.mItems);
+        assertFalse(mLayout.isRefreshing());
+    }
+
+    private void submit(final List<String> newList) {
+        final List<String> oldList = mAdapter.mItems;
+        mLayout.setRefreshComplete(newList, new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.get(oldItemPosition).equals(newList.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return true;
+            }
+        }, new PullRefreshLayout.OnRefreshResultListener<String>() {
+            @Override
+            public void onRefreshResult(List<String> list, DiffUtil.DiffResult diffResult) {
+                mApplyCount++;
+                mAppliedState = last();
+                mAdapter.mItems = list;
+            }
+        });
+    }
+
+    private PullRefreshLayout.State last() {
+        final List<PullRefreshLayout.State> states = mLayout.getCountingHeader().states;
+        return states.get(states.size() - 1);
+    }
+
+    private void runTasks() {
+        final List<Runnable> tasks = new ArrayList<>(mTasks);
+        mTasks.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    private void advance(long millis) {
+        mRule.advance(millis);
+    }
+
+    private static final class ListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        List<String> mItems;
+        int mInserted;
+        int mRemoved;
+
+        ListAdapter(List<String> items) {
+            mItems = items;
+            registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    mInserted += itemCount;
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    mRemoved += itemCount;
+                }
+            });
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final View item = new View(parent.getContext());
+            item.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    CountingViews.ITEM_HEIGHT));
+            return new RecyclerView.ViewHolder(item) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItems.size();
+        }
+    }
+}
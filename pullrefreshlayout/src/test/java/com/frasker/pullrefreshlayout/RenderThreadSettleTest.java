@@ -0,0 +1,74 @@
+package com.frasker.pullrefreshlayout;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which headers {@link PullRefreshLayout#setRenderThreadSettle(boolean)}
+ * applies to.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RenderThreadSettleTest {
+
+    // 足够完成刷新动画
+    private static final int ANIMATION_MS = 1000;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    @Test
+    public void headerViewSettlesWithTranslation() {
+        final CountingViews.Layout layout = mRule.newLayout();
+        layout.hardwareAccelerated = true;
+        layout.setRenderThreadSettle(true);
+        mRule.attach(layout);
+        final View target = layout.getCountingTarget();
+
+        layout.setRefreshing(true, true);
+        mRule.runFrames(3);
+        // 动画期间只改变 translationY，offset 在动画结束后才同步
+        assertEquals(0, target.getTop());
+        assertTrue(target.getTranslationY() > 0);
+
+        mRule.advance(ANIMATION_MS);
+        assertEquals(CountingViews.HEADER_HEIGHT, target.getTop());
+        assertEquals(0, target.getTranslationY(), 0);
+    }
+
+    @Test
+    public void drawableHeaderFallsBackToOffsetAnimation() {
+        final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        final CountingViews.Layout layout = new CountingViews.Layout(activity);
+        final View target = new View(activity);
+        layout.addView(target, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        // 没有 header 子 View，刷新时使用默认的 DefaultPullRefreshDrawable
+        layout.onFinishInflate();
+        layout.hardwareAccelerated = true;
+        layout.setRenderThreadSettle(true);
+        mRule.attach(layout);
+        final int refreshingHeight = new DefaultPullRefreshDrawable(activity).getIntrinsicHeight();
+
+        layout.setRefreshing(true, true);
+        mRule.runFrames(3);
+        // drawable 按 offset 裁剪和绘制，offset 必须逐帧变化
+        final int top = target.getTop();
+        assertTrue(top > 0 && top < refreshingHeight);
+        assertEquals(0, target.getTranslationY(), 0);
+
+        mRule.advance(ANIMATION_MS);
+        assertEquals(refreshingHeight, target.getTop());
+        assertTrue(layout.isRefreshing());
+    }
+}
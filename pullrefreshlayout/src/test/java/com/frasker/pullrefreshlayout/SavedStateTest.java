@@ -0,0 +1,199 @@
+package com.frasker.pullrefreshlayout;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.view.ViewCompat;
+import android.view.ViewGroup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a refresh in flight survives a save/restore of {@link PullRefreshLayout}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class SavedStateTest {
+
+    private static final int ANIMATION_MS = 1000;
+
+    @Rule
+    public final LayoutTestRule mRule = new LayoutTestRule();
+
+    private int mRefreshCount;
+    private final List<CancellationSignal> mSignals = new ArrayList<>();
+
+    private final PullRefreshLayout.OnRefreshListener mListener = new PullRefreshLayout.OnRefreshListener() {
+        @Override
+        public void onRefresh() {
+            mRefreshCount++;
+        }
+    };
+
+    private final PullRefreshLayout.AsyncRefreshListener mAsyncListener = new PullRefreshLayout.AsyncRefreshListener() {
+        @Override
+        public RefreshHandle onRefresh(CancellationSignal signal) {
+            mSignals.add(signal);
+            return new RefreshHandle();
+        }
+    };
+
+    @Test
+    public void restoresRefreshingWithoutNotifyingAgain() {
+        final CountingViews.Layout layout = createLayout();
+        layout.setRefreshing(true, false);
+        advance(ANIMATION_MS);
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(layout));
+
+        final CountingViews.Layout restored = restore(layout);
+        assertTrue(restored.isRefreshing());
+        assertEquals(CountingViews.HEADER_HEIGHT, restored.getCurrentOffset());
+        assertEquals(CountingViews.HEADER_HEIGHT, restored.getCountingHeader().lastOffset);
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(restored));
+        assertEquals(0, mRefreshCount);
+
+        restored.setRefreshComplete(true);
+        advance(ANIMATION_MS);
+        assertFalse(restored.isRefreshing());
+        assertEquals(0, restored.getCurrentOffset());
+    }
+
+    @Test
+    public void notifiesRefreshReleasedBeforeSave() {
+        final CountingViews.Layout layout = createLayout();
+        final CountingViews.Target target = layout.getCountingTarget();
+        layout.onStartNestedScroll(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        layout.onNestedScrollAccepted(target, target, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+        for (int i = 0; i < 20; i++) {
+            layout.onNestedScroll(target, 0, 0, 0, -40, ViewCompat.TYPE_TOUCH);
+        }
+        layout.onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+        // 回弹动画还没结束，onRefresh 还没有通知
+        assertEquals(PullRefreshLayout.State.REFRESH_RELEASED, last(layout));
+        assertEquals(0, mRefreshCount);
+
+        final CountingViews.Layout restored = restore(layout);
+        assertTrue(restored.isRefreshing());
+        assertEquals(CountingViews.HEADER_HEIGHT, restored.getCurrentOffset());
+        assertEquals(1, mRefreshCount);
+
+        restore(restored);
+        assertEquals(1, mRefreshCount);
+    }
+
+    @Test
+    public void refreshIsRequestedAtMostOnceAcrossRestores() {
+        final CountingViews.Layout layout = createLayout();
+        layout.setAsyncRefreshListener(mAsyncListener);
+        layout.setRefreshing(true, false);
+        advance(ANIMATION_MS);
+        assertEquals(1, mSignals.size());
+
+        final CountingViews.Layout restored = restore(layout, mAsyncListener);
+        // detach 取消了请求，恢复后只恢复刷新中的状态，由调用方结束刷新
+        assertTrue(mSignals.get(0).isCanceled());
+        assertEquals(1, mSignals.size());
+        assertTrue(restored.isRefreshing());
+        assertEquals(CountingViews.HEADER_HEIGHT, restored.getCurrentOffset());
+        assertEquals(PullRefreshLayout.State.REFRESHING, last(restored));
+
+        final CountingViews.Layout restoredTwice = restore(restored, mAsyncListener);
+        assertEquals(1, mSignals.size());
+        assertEquals(0, mRefreshCount);
+
+        restoredTwice.setRefreshComplete(true);
+        advance(ANIMATION_MS);
+        assertFalse(restoredTwice.isRefreshing());
+        assertEquals(0, restoredTwice.getCurrentOffset());
+    }
+
+    @Test
+    public void restoresAsyncRefreshWithoutListener() {
+        final CountingViews.Layout layout = createLayout();
+        layout.setAsyncRefreshListener(mAsyncListener);
+        layout.setRefreshing(true, false);
+        advance(ANIMATION_MS);
+
+        final CountingViews.Layout restored = restore(layout);
+        assertTrue(restored.isRefreshing());
+        assertEquals(CountingViews.HEADER_HEIGHT, restored.getCurrentOffset());
+        restored.setAsyncRefreshListener(mAsyncListener);
+        assertEquals(1, mSignals.size());
+    }
+
+    @Test
+    public void defersPendingAsyncRefreshUntilListenerIsSet() {
+        final CountingViews.Layout layout = createLayout();
+        layout.setAsyncRefreshListener(mAsyncListener);
+        layout.setRefreshing(true, true);
+        // 动画还没结束，异步刷新还没有开始
+        assertEquals(0, mSignals.size());
+
+        final CountingViews.Layout restored = restore(layout);
+        assertTrue(restored.isRefreshing());
+        assertEquals(0, mSignals.size());
+
+        restored.setAsyncRefreshListener(mAsyncListener);
+        assertEquals(1, mSignals.size());
+        assertFalse(mSignals.get(0).isCanceled());
+        restore(restored, mAsyncListener);
+        assertEquals(1, mSignals.size());
+    }
+
+    @Test
+    public void idleLayoutRestoresIdle() {
+        final CountingViews.Layout restored = restore(createLayout());
+        assertFalse(restored.isRefreshing());
+        assertEquals(0, restored.getCurrentOffset());
+        assertTrue(restored.getCountingHeader().states.isEmpty());
+    }
+
+    private CountingViews.Layout createLayout() {
+        final CountingViews.Layout layout = mRule.newLayout();
+        layout.setOnRefreshListener(mListener);
+        return mRule.attach(layout);
+    }
+
+    /**
+     * 模拟旋转屏幕：保存状态，经过 Parcel 后恢复到新的 layout，恢复发生在新 layout 布局之前
+     */
+    private CountingViews.Layout restore(PullRefreshLayout layout) {
+        return restore(layout, null);
+    }
+
+    private CountingViews.Layout restore(PullRefreshLayout layout,
+                                         PullRefreshLayout.AsyncRefreshListener asyncListener) {
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(layout.onSaveInstanceState(), 0);
+        ((ViewGroup) layout.getParent()).removeView(layout);
+        parcel.setDataPosition(0);
+        final Parcelable state = parcel.readParcelable(getClass().getClassLoader());
+        parcel.recycle();
+
+        final CountingViews.Layout restored = mRule.newLayout();
+        restored.setOnRefreshListener(mListener);
+        restored.setAsyncRefreshListener(asyncListener);
+        restored.onRestoreInstanceState(state);
+        return mRule.attach(restored);
+    }
+
+    private static PullRefreshLayout.State last(CountingViews.Layout layout) {
+        final List<PullRefreshLayout.State> states = layout.getCountingHeader().states;
+        return states.isEmpty() ? PullRefreshLayout.State.NONE : states.get(states.size() - 1);
+    }
+
+    private void advance(long millis) {
+        mRule.advance(millis);
+    }
+}